@@ -0,0 +1,87 @@
+package com.nyusta.geolocation_api.benchmark;
+
+import com.nyusta.geolocation_api.benchmark.fixtures.SyntheticDatabases;
+import com.nyusta.geolocation_api.config.CacheConfig;
+import com.nyusta.geolocation_api.config.ExecutorConfig;
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import com.nyusta.geolocation_api.config.MaxMindProperties;
+import com.nyusta.geolocation_api.event.DatabaseUpdatedEvent;
+import com.nyusta.geolocation_api.service.DatabaseDownloader;
+import com.nyusta.geolocation_api.service.GeolocationService;
+import com.nyusta.geolocation_api.service.LookupCoalescer;
+import com.nyusta.geolocation_api.service.LookupMetrics;
+import com.nyusta.geolocation_api.service.MaxMindDatabaseService;
+import com.nyusta.geolocation_api.service.NetworkPrefixCache;
+import com.nyusta.geolocation_api.service.ReservedRanges;
+import com.nyusta.geolocation_api.service.TrafficAnalytics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.availability.ApplicationAvailabilityBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+// The lookup stack wired by hand over synthetic databases in a temp directory, with the same
+// cache configuration as the application but without a Spring context or a MaxMind download
+public final class BenchmarkServices implements AutoCloseable {
+    private final Path directory;
+    private final MaxMindDatabaseService databaseService;
+    private final DatabaseDownloader downloader;
+    private final ThreadPoolTaskExecutor loadExecutor;
+    private final NetworkPrefixCache networkCache;
+    private final GeolocationService geolocationService;
+
+    public BenchmarkServices(MaxMindProperties.LookupEngine engine) throws IOException {
+        directory = Files.createTempDirectory("geolocation-jmh");
+        SyntheticDatabases.writeAll(directory);
+
+        MaxMindProperties properties = new MaxMindProperties();
+        properties.setDatabasePath(directory.toString());
+        properties.setAutoUpdate(false);
+        properties.setDatabases(Map.of(
+                "country", SyntheticDatabases.COUNTRY_FILE,
+                "city", SyntheticDatabases.CITY_FILE,
+                "asn", SyntheticDatabases.ASN_FILE));
+        properties.setLookupEngine(engine);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CacheManager cacheManager = new CacheConfig().cacheManager(new CacheProperties());
+        networkCache = new NetworkPrefixCache(cacheManager, meterRegistry);
+        downloader = new DatabaseDownloader(properties);
+        loadExecutor = new ExecutorConfig().databaseDownloadExecutor(properties);
+        loadExecutor.initialize();
+        databaseService = new MaxMindDatabaseService(properties, event -> {
+            if (event instanceof DatabaseUpdatedEvent updated) {
+                networkCache.onDatabaseUpdated(updated);
+            }
+        }, meterRegistry, downloader, loadExecutor);
+        // Synchronously, including the compiled index that initialize() would build in the background
+        databaseService.loadFromDisk();
+        databaseService.refresh();
+        ReservedRanges reservedRanges = new ReservedRanges(properties);
+        geolocationService = new GeolocationService(databaseService, networkCache, reservedRanges,
+                new LookupMetrics(meterRegistry, reservedRanges), new LookupCoalescer(networkCache, meterRegistry),
+                new ApplicationAvailabilityBean(), new TrafficAnalytics(new GeolocationProperties(), meterRegistry));
+    }
+
+    public GeolocationService geolocationService() {
+        return geolocationService;
+    }
+
+    public NetworkPrefixCache networkCache() {
+        return networkCache;
+    }
+
+    @Override
+    public void close() throws IOException {
+        databaseService.cleanup();
+        loadExecutor.shutdown();
+        downloader.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+}
@@ -0,0 +1,50 @@
+package com.nyusta.geolocation_api.benchmark;
+
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import com.nyusta.geolocation_api.utils.ClientIpResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+// ClientIpResolver over typical header layouts, behind a trusted proxy at 10.0.0.7
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ClientIpExtractionBenchmark {
+    @Param({"REMOTE_ADDR", "X_FORWARDED_FOR", "X_FORWARDED_FOR_CHAIN", "X_REAL_IP", "FORWARDED_IPV6"})
+    public String headers;
+
+    private ClientIpResolver resolver;
+    private MockHttpServletRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        resolver = new ClientIpResolver(new GeolocationProperties());
+        request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.7");
+        switch (headers) {
+            case "X_FORWARDED_FOR" -> request.addHeader("X-Forwarded-For", "11.2.3.4");
+            case "X_FORWARDED_FOR_CHAIN" -> request.addHeader("X-Forwarded-For", "11.2.3.4, 10.0.0.1, 10.0.0.2, 10.0.0.3");
+            case "X_REAL_IP" -> request.addHeader("X-Real-IP", "11.2.3.4");
+            case "FORWARDED_IPV6" -> request.addHeader("X-Forwarded-For", "2a00:1:2:3::4, 10.0.0.1");
+            default -> {
+            }
+        }
+    }
+
+    @Benchmark
+    public String resolve() {
+        // Drop the memoized result so every invocation does the work
+        request.clearAttributes();
+        return resolver.resolve(request);
+    }
+}
@@ -0,0 +1,111 @@
+package com.nyusta.geolocation_api.benchmark;
+
+import com.nyusta.geolocation_api.benchmark.fixtures.SyntheticDatabases;
+import com.nyusta.geolocation_api.config.MaxMindProperties;
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.service.LookupProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// GeolocationService.getLocationByIP per path: cold lookups (empty cache, databases only), cache hits,
+// City misses answered by the Country fallback, IPv6, and the reserved-range short-circuit
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeolocationLookupBenchmark {
+    private static final int ADDRESSES = 4096; // power of two, see Cursor
+
+    @State(Scope.Benchmark)
+    public static class Services {
+        @Param({"MMDB", "COMPILED"})
+        public MaxMindProperties.LookupEngine engine;
+
+        BenchmarkServices services;
+        String[] cityAddresses;
+        String[] countryOnlyAddresses;
+        String[] ipv6Addresses;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            services = new BenchmarkServices(engine);
+            cityAddresses = SyntheticDatabases.cityAddresses(ADDRESSES, 1);
+            countryOnlyAddresses = SyntheticDatabases.countryOnlyAddresses(ADDRESSES, 2);
+            ipv6Addresses = SyntheticDatabases.ipv6Addresses(ADDRESSES, 3);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            services.close();
+        }
+    }
+
+    // Fills the cache with every benchmark address once per iteration
+    @State(Scope.Benchmark)
+    public static class WarmCache {
+        @Setup(Level.Iteration)
+        public void warm(Services s) {
+            for (String ip : s.cityAddresses) {
+                s.services.geolocationService().getLocationByIP(ip);
+            }
+        }
+    }
+
+    // Empties the cache before every call; invocation-level setup is only acceptable here because a
+    // cold lookup costs microseconds, far above the fixture overhead JMH warns about
+    @State(Scope.Thread)
+    public static class ColdCache {
+        @Setup(Level.Invocation)
+        public void invalidate(Services s) {
+            s.services.networkCache().invalidate();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next() {
+            return next++ & (ADDRESSES - 1);
+        }
+    }
+
+    @Benchmark
+    public GeoLocationData coldLookup(Services s, ColdCache cold, Cursor cursor) {
+        return s.services.geolocationService().getLocationByIP(s.cityAddresses[cursor.next()]);
+    }
+
+    @Benchmark
+    public GeoLocationData cacheHit(Services s, WarmCache warm, Cursor cursor) {
+        return s.services.geolocationService().getLocationByIP(s.cityAddresses[cursor.next()]);
+    }
+
+    @Benchmark
+    public GeoLocationData coldLookupCountryProfile(Services s, ColdCache cold, Cursor cursor) {
+        return s.services.geolocationService().getLocationByIP(s.cityAddresses[cursor.next()], LookupProfile.COUNTRY);
+    }
+
+    @Benchmark
+    public GeoLocationData countryFallback(Services s, ColdCache cold, Cursor cursor) {
+        return s.services.geolocationService().getLocationByIP(s.countryOnlyAddresses[cursor.next()]);
+    }
+
+    @Benchmark
+    public GeoLocationData coldLookupIPv6(Services s, ColdCache cold, Cursor cursor) {
+        return s.services.geolocationService().getLocationByIP(s.ipv6Addresses[cursor.next()]);
+    }
+
+    @Benchmark
+    public GeoLocationData privateIp(Services s) {
+        return s.services.geolocationService().getLocationByIP("192.168.1.10");
+    }
+}
@@ -0,0 +1,76 @@
+package com.nyusta.geolocation_api.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.payload.response.BatchGeoLocationResponse;
+import com.nyusta.geolocation_api.payload.response.GeoLocationResponse;
+import com.nyusta.geolocation_api.payload.response.GeoLocationResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// JSON encoding of the single and batch responses with an ObjectMapper configured like Spring Boot's
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResponseSerializationBenchmark {
+    private ObjectMapper objectMapper;
+    private GeoLocationResponse single;
+    private BatchGeoLocationResponse batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        GeoLocationData data = GeoLocationData.builder()
+                .ip("11.3.4.5")
+                .country("Germany")
+                .countryCode("DE")
+                .region("Land Berlin")
+                .regionCode("BE")
+                .city("Berlin")
+                .postalCode("10115")
+                .latitude(52.5244)
+                .longitude(13.4105)
+                .timezone("Europe/Berlin")
+                .continent("EU")
+                .accuracyRadius(5)
+                .network("11.3.4.0/24")
+                .asn(64515L)
+                .asnOrganization("Synthetic Transit AS64515")
+                .isp("Synthetic Transit AS64515")
+                .isEuCountry(true)
+                .source("MaxMind-GeoLite2")
+                .timestamp(System.currentTimeMillis())
+                .build();
+        single = GeoLocationResponse.success(data, 42);
+
+        List<GeoLocationResult> results = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            String ip = "11.3.4." + i;
+            results.add(GeoLocationResult.success(ip, data.toBuilder().ip(ip).build()));
+        }
+        batch = BatchGeoLocationResponse.success(results, 100, 0, 42);
+    }
+
+    @Benchmark
+    public byte[] single() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(single);
+    }
+
+    @Benchmark
+    public byte[] batchOf100() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(batch);
+    }
+}
@@ -0,0 +1,222 @@
+package com.nyusta.geolocation_api.benchmark.fixtures;
+
+import com.nyusta.geolocation_api.utils.CidrTrie;
+import com.nyusta.geolocation_api.utils.IPAddress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Minimal MaxMind DB (format 2.0) writer for synthetic benchmark fixtures: an IPv6 tree with IPv4
+// stored under ::/96, 32-bit records and a deduplicated data section without pointers.
+// Values map onto MMDB types the way the reader maps them back: String -> utf8_string,
+// Double -> double, Float -> float, Integer -> uint16, Long -> uint32, BigInteger -> uint64,
+// Boolean -> boolean, Map -> map, List -> array.
+public final class MmdbWriter {
+    private static final byte[] METADATA_MARKER = {
+            (byte) 0xAB, (byte) 0xCD, (byte) 0xEF, 'M', 'a', 'x', 'M', 'i', 'n', 'd', '.', 'c', 'o', 'm'
+    };
+
+    private final String databaseType;
+    private final Node root = new Node();
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    private final Map<Object, Integer> dataOffsets = new HashMap<>();
+
+    public MmdbWriter(String databaseType) {
+        this.databaseType = databaseType;
+    }
+
+    public MmdbWriter insert(String cidr, Map<String, ?> record) {
+        CidrTrie.Cidr parsed = CidrTrie.Cidr.parse(cidr);
+        IPAddress address = parsed.address();
+        int prefixLength = address.isIPv4() ? 96 + parsed.prefixLength() : parsed.prefixLength();
+        Leaf leaf = new Leaf(offsetOf(record));
+
+        Node node = root;
+        for (int i = 0; i < prefixLength - 1; i++) {
+            int bit = bit(address, i);
+            Object child = node.children[bit];
+            if (!(child instanceof Node)) {
+                // Splitting an existing network: both halves keep its data until overwritten
+                Node split = new Node();
+                split.children[0] = child;
+                split.children[1] = child;
+                node.children[bit] = split;
+                child = split;
+            }
+            node = (Node) child;
+        }
+        node.children[bit(address, prefixLength - 1)] = leaf;
+        return this;
+    }
+
+    public void write(Path file) throws IOException {
+        // Breadth-first numbering, root is node 0
+        List<Node> nodes = new ArrayList<>();
+        Map<Node, Integer> numbers = new HashMap<>();
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            numbers.put(node, nodes.size());
+            nodes.add(node);
+            for (Object child : node.children) {
+                if (child instanceof Node next) {
+                    queue.add(next);
+                }
+            }
+        }
+
+        int nodeCount = nodes.size();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            byte[] record = new byte[8];
+            for (Node node : nodes) {
+                for (int side = 0; side < 2; side++) {
+                    Object child = node.children[side];
+                    long value;
+                    if (child instanceof Node next) {
+                        value = numbers.get(next);
+                    } else if (child instanceof Leaf leaf) {
+                        value = nodeCount + 16L + leaf.offset();
+                    } else {
+                        value = nodeCount; // no data
+                    }
+                    for (int b = 0; b < 4; b++) {
+                        record[side * 4 + b] = (byte) (value >>> (24 - 8 * b));
+                    }
+                }
+                out.write(record);
+            }
+            out.write(new byte[16]); // data section separator
+            data.writeTo(out);
+            out.write(METADATA_MARKER);
+            out.write(encode(metadata(nodeCount)));
+        }
+    }
+
+    private Map<String, Object> metadata(int nodeCount) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("binary_format_major_version", 2);
+        metadata.put("binary_format_minor_version", 0);
+        metadata.put("build_epoch", BigInteger.valueOf(System.currentTimeMillis() / 1000));
+        metadata.put("database_type", databaseType);
+        metadata.put("description", Map.of("en", "Synthetic " + databaseType + " benchmark fixture"));
+        metadata.put("ip_version", 6);
+        metadata.put("languages", List.of("en"));
+        metadata.put("node_count", (long) nodeCount);
+        metadata.put("record_size", 32);
+        return metadata;
+    }
+
+    private int offsetOf(Map<String, ?> record) {
+        Integer offset = dataOffsets.get(record);
+        if (offset == null) {
+            offset = data.size();
+            data.writeBytes(encode(record));
+            dataOffsets.put(record, offset);
+        }
+        return offset;
+    }
+
+    // MMDB trees keep IPv4 at ::a.b.c.d (IPv4-compatible), not at the IPv4-mapped ::ffff:a.b.c.d
+    private static int bit(IPAddress address, int index) {
+        long low = address.isIPv4() ? address.toIPv4Int() & 0xFFFF_FFFFL : address.low();
+        long word = index < 64 ? address.high() : low;
+        return (int) ((word >>> (63 - (index & 63))) & 1);
+    }
+
+    static byte[] encode(Object value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encode(out, value);
+        return out.toByteArray();
+    }
+
+    private static void encode(ByteArrayOutputStream out, Object value) {
+        if (value instanceof String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            control(out, 2, bytes.length);
+            out.writeBytes(bytes);
+        } else if (value instanceof Double d) {
+            control(out, 3, 8);
+            unsigned(out, Double.doubleToLongBits(d), 8);
+        } else if (value instanceof Float f) {
+            control(out, 15, 4);
+            unsigned(out, Float.floatToIntBits(f) & 0xFFFF_FFFFL, 4);
+        } else if (value instanceof Integer i) {
+            uint(out, 5, i & 0xFFFF);
+        } else if (value instanceof Long l) {
+            uint(out, 6, l & 0xFFFF_FFFFL);
+        } else if (value instanceof BigInteger b) {
+            uint(out, 9, b.longValue());
+        } else if (value instanceof Boolean b) {
+            control(out, 14, b ? 1 : 0);
+        } else if (value instanceof Map<?, ?> map) {
+            control(out, 7, map.size());
+            map.forEach((k, v) -> {
+                encode(out, k.toString());
+                encode(out, v);
+            });
+        } else if (value instanceof List<?> list) {
+            control(out, 11, list.size());
+            list.forEach(element -> encode(out, element));
+        } else {
+            throw new IllegalArgumentException("Unsupported MMDB value: " + value);
+        }
+    }
+
+    private static void uint(ByteArrayOutputStream out, int type, long value) {
+        int size = (64 - Long.numberOfLeadingZeros(value) + 7) / 8;
+        control(out, type, size);
+        unsigned(out, value, size);
+    }
+
+    private static void unsigned(ByteArrayOutputStream out, long value, int size) {
+        for (int i = size - 1; i >= 0; i--) {
+            out.write((int) (value >>> (8 * i)));
+        }
+    }
+
+    // Control byte: type in the top 3 bits (0 = extended, type - 7 in the next byte), size in the low 5
+    private static void control(ByteArrayOutputStream out, int type, int size) {
+        int typeBits = type <= 7 ? type << 5 : 0;
+        if (size < 29) {
+            out.write(typeBits | size);
+            extendedType(out, type);
+        } else if (size < 285) {
+            out.write(typeBits | 29);
+            extendedType(out, type);
+            out.write(size - 29);
+        } else if (size < 65821) {
+            out.write(typeBits | 30);
+            extendedType(out, type);
+            unsigned(out, size - 285, 2);
+        } else {
+            out.write(typeBits | 31);
+            extendedType(out, type);
+            unsigned(out, size - 65821, 3);
+        }
+    }
+
+    private static void extendedType(ByteArrayOutputStream out, int type) {
+        if (type > 7) {
+            out.write(type - 7);
+        }
+    }
+
+    private static final class Node {
+        final Object[] children = new Object[2]; // Node, Leaf or null
+    }
+
+    private record Leaf(int offset) {
+    }
+}
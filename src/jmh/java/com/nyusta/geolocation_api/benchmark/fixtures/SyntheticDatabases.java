@@ -0,0 +1,153 @@
+package com.nyusta.geolocation_api.benchmark.fixtures;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Deterministic City/Country/ASN fixtures shaped like GeoLite2, written with the file names
+// application.yml expects:
+//   11.0.0.0/10  City /24s, Country /16s and ASN /16s -> full City + ASN answer
+//   12.0.0.0/8   Country /16s and ASN /16s only       -> City miss, Country fallback
+//   2a00::/16    City /32s, Country and ASN           -> IPv6 path
+public final class SyntheticDatabases {
+    public static final String CITY_FILE = "GeoLite2-City.mmdb";
+    public static final String COUNTRY_FILE = "GeoLite2-Country.mmdb";
+    public static final String ASN_FILE = "GeoLite2-ASN.mmdb";
+
+    private static final int CITY_NETWORKS = 1 << 14; // 11.0.0.0/24 .. 11.63.255.0/24
+    private static final int ASN_COUNT = 64;
+
+    private record Place(long geonameId, String city, String postal, String subdivision, String subdivisionCode,
+                         String countryCode, String country, String continentCode, String continent,
+                         double latitude, double longitude, String timeZone) {
+    }
+
+    private static final List<Place> PLACES = List.of(
+            new Place(2950159, "Berlin", "10115", "Land Berlin", "BE", "DE", "Germany", "EU", "Europe", 52.5244, 13.4105, "Europe/Berlin"),
+            new Place(2988507, "Paris", "75001", "\u00cele-de-France", "IDF", "FR", "France", "EU", "Europe", 48.8534, 2.3488, "Europe/Paris"),
+            new Place(2643743, "London", "EC1A", "England", "ENG", "GB", "United Kingdom", "EU", "Europe", 51.5085, -0.1257, "Europe/London"),
+            new Place(3117735, "Madrid", "28001", "Madrid", "MD", "ES", "Spain", "EU", "Europe", 40.4165, -3.7026, "Europe/Madrid"),
+            new Place(2759794, "Amsterdam", "1012", "North Holland", "NH", "NL", "Netherlands", "EU", "Europe", 52.3740, 4.8897, "Europe/Amsterdam"),
+            new Place(5128581, "New York", "10001", "New York", "NY", "US", "United States", "NA", "North America", 40.7143, -74.0060, "America/New_York"),
+            new Place(5368361, "Los Angeles", "90001", "California", "CA", "US", "United States", "NA", "North America", 34.0522, -118.2437, "America/Los_Angeles"),
+            new Place(6167865, "Toronto", "M5H", "Ontario", "ON", "CA", "Canada", "NA", "North America", 43.7001, -79.4163, "America/Toronto"),
+            new Place(3448439, "S\u00e3o Paulo", "01000", "S\u00e3o Paulo", "SP", "BR", "Brazil", "SA", "South America", -23.5475, -46.6361, "America/Sao_Paulo"),
+            new Place(1850147, "Tokyo", "100-0001", "Tokyo", "13", "JP", "Japan", "AS", "Asia", 35.6895, 139.6917, "Asia/Tokyo"),
+            new Place(1880252, "Singapore", "018956", "Central Singapore", "01", "SG", "Singapore", "AS", "Asia", 1.2897, 103.8501, "Asia/Singapore"),
+            new Place(1275339, "Mumbai", "400001", "Maharashtra", "MH", "IN", "India", "AS", "Asia", 19.0728, 72.8826, "Asia/Kolkata"),
+            new Place(2147714, "Sydney", "2000", "New South Wales", "NSW", "AU", "Australia", "OC", "Oceania", -33.8679, 151.2073, "Australia/Sydney"),
+            new Place(993800, "Johannesburg", "2001", "Gauteng", "GP", "ZA", "South Africa", "AF", "Africa", -26.2023, 28.0436, "Africa/Johannesburg")
+    );
+
+    private SyntheticDatabases() {
+    }
+
+    public static void writeAll(Path directory) throws IOException {
+        MmdbWriter city = new MmdbWriter("GeoLite2-City");
+        MmdbWriter country = new MmdbWriter("GeoLite2-Country");
+        MmdbWriter asn = new MmdbWriter("GeoLite2-ASN");
+
+        for (int i = 0; i < CITY_NETWORKS; i++) {
+            Place place = place(i >>> 8); // one place per /16 so Country and City agree
+            city.insert("11." + (i >>> 8) + "." + (i & 0xFF) + ".0/24", cityRecord(place, i));
+        }
+        for (int second = 0; second < 256; second++) {
+            country.insert("11." + second + ".0.0/16", countryRecord(place(second)));
+            country.insert("12." + second + ".0.0/16", countryRecord(place(second + 7)));
+            asn.insert("11." + second + ".0.0/16", asnRecord(second));
+            asn.insert("12." + second + ".0.0/16", asnRecord(second + 11));
+        }
+        for (int i = 0; i < 256; i++) {
+            String network = "2a00:" + Integer.toHexString(i) + "::/32";
+            city.insert(network, cityRecord(place(i), i));
+            country.insert(network, countryRecord(place(i)));
+            asn.insert(network, asnRecord(i));
+        }
+
+        city.write(directory.resolve(CITY_FILE));
+        country.write(directory.resolve(COUNTRY_FILE));
+        asn.write(directory.resolve(ASN_FILE));
+    }
+
+    // Addresses covered by the City database
+    public static String[] cityAddresses(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] addresses = new String[count];
+        for (int i = 0; i < count; i++) {
+            addresses[i] = "11." + random.nextInt(64) + "." + random.nextInt(256) + "." + random.nextInt(256);
+        }
+        return addresses;
+    }
+
+    // Addresses only the Country database covers
+    public static String[] countryOnlyAddresses(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] addresses = new String[count];
+        for (int i = 0; i < count; i++) {
+            addresses[i] = "12." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256);
+        }
+        return addresses;
+    }
+
+    public static String[] ipv6Addresses(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] addresses = new String[count];
+        for (int i = 0; i < count; i++) {
+            addresses[i] = "2a00:" + Integer.toHexString(random.nextInt(256)) + ":"
+                    + Integer.toHexString(random.nextInt(0x10000)) + "::" + Integer.toHexString(random.nextInt(0x10000));
+        }
+        return addresses;
+    }
+
+    private static Place place(int index) {
+        return PLACES.get(Math.floorMod(index * 31, PLACES.size()));
+    }
+
+    private static Map<String, Object> cityRecord(Place place, int network) {
+        return Map.of(
+                "city", Map.of("geoname_id", place.geonameId(), "names", Map.of("en", place.city())),
+                "continent", continent(place),
+                "country", country(place),
+                "location", Map.of(
+                        "accuracy_radius", 5 + (network % 4) * 45,
+                        "latitude", place.latitude(),
+                        "longitude", place.longitude(),
+                        "time_zone", place.timeZone()),
+                "postal", Map.of("code", place.postal()),
+                "registered_country", country(place),
+                "subdivisions", List.of(Map.of(
+                        "geoname_id", place.geonameId() + 1,
+                        "iso_code", place.subdivisionCode(),
+                        "names", Map.of("en", place.subdivision()))));
+    }
+
+    private static Map<String, Object> countryRecord(Place place) {
+        return Map.of(
+                "continent", continent(place),
+                "country", country(place),
+                "registered_country", country(place));
+    }
+
+    private static Map<String, Object> continent(Place place) {
+        return Map.of(
+                "code", place.continentCode(),
+                "geoname_id", (long) place.continentCode().hashCode() & 0xFFFFFF,
+                "names", Map.of("en", place.continent()));
+    }
+
+    private static Map<String, Object> country(Place place) {
+        return Map.of(
+                "geoname_id", (long) place.countryCode().hashCode() & 0xFFFFFF,
+                "iso_code", place.countryCode(),
+                "names", Map.of("en", place.country()));
+    }
+
+    private static Map<String, Object> asnRecord(int index) {
+        long number = 64512 + Math.floorMod(index, ASN_COUNT);
+        return Map.of(
+                "autonomous_system_number", number,
+                "autonomous_system_organization", "Synthetic Transit AS" + number);
+    }
+}
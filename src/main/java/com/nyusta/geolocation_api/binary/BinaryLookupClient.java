@@ -0,0 +1,100 @@
+package com.nyusta.geolocation_api.binary;
+
+import com.nyusta.geolocation_api.codec.GeoRecordCodec;
+import com.nyusta.geolocation_api.service.LookupProfile;
+import com.nyusta.geolocation_api.utils.IPAddress;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+// Minimal blocking client for the binary listener, for tests and tooling. Not thread-safe.
+// lookupAll pipelines requests in windows, so a large list never has more than WINDOW requests
+// unanswered (which would otherwise fill the server's send backlog and stall both sides).
+public class BinaryLookupClient implements AutoCloseable {
+    private static final int WINDOW = 256;
+
+    private final SocketChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+    private int nextId;
+
+    public BinaryLookupClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        in.flip(); // empty, in read mode
+    }
+
+    public Response lookup(String ip) throws IOException {
+        return lookup(ip, LookupProfile.FULL);
+    }
+
+    public Response lookup(String ip, LookupProfile profile) throws IOException {
+        return lookupAll(List.of(ip), profile).get(0);
+    }
+
+    public List<Response> lookupAll(List<String> ips, LookupProfile profile) throws IOException {
+        List<Response> responses = new ArrayList<>(ips.size());
+        ByteBuffer out = ByteBuffer.allocate(WINDOW * (4 + BinaryProtocol.MAX_REQUEST_LENGTH));
+        for (int from = 0; from < ips.size(); from += WINDOW) {
+            int to = Math.min(ips.size(), from + WINDOW);
+            out.clear();
+            for (int i = from; i < to; i++) {
+                IPAddress address = IPAddress.parse(ips.get(i));
+                if (address == null) {
+                    throw new IllegalArgumentException("Invalid IP address: " + ips.get(i));
+                }
+                byte[] bytes = address.toBytes();
+                out.putInt(4 + 1 + 1 + bytes.length);
+                out.putInt(nextId++);
+                out.put((byte) profile.ordinal());
+                out.put((byte) bytes.length);
+                out.put(bytes);
+            }
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            for (int i = from; i < to; i++) {
+                responses.add(readResponse());
+            }
+        }
+        return responses;
+    }
+
+    private Response readResponse() throws IOException {
+        fill(4);
+        int length = in.getInt();
+        fill(length);
+        int id = in.getInt();
+        int status = in.get() & 0xFF;
+        ByteBuffer record = in.slice().limit(length - 5);
+        in.position(in.position() + length - 5);
+        return new Response(id, status, GeoRecordCodec.read(record));
+    }
+
+    private void fill(int bytes) throws IOException {
+        while (in.remaining() < bytes) {
+            in.compact();
+            if (channel.read(in) < 0) {
+                throw new EOFException("Connection closed by server");
+            }
+            in.flip();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public record Response(int id, int status, GeoRecordCodec.Record record) {
+        public boolean isOk() {
+            return status == BinaryProtocol.STATUS_OK;
+        }
+    }
+}
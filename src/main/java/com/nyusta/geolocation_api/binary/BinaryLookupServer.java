@@ -0,0 +1,357 @@
+package com.nyusta.geolocation_api.binary;
+
+import com.nyusta.geolocation_api.codec.GeoRecordCodec;
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.service.GeolocationService;
+import com.nyusta.geolocation_api.service.LookupProfile;
+import com.nyusta.geolocation_api.utils.IPAddress;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Optional TCP listener speaking BinaryProtocol, for sidecars that want cached lookups without the
+// HTTP stack. A fixed set of selector threads each own their connections; lookups run inline on
+// the event loop, which is the cheap case for cache hits. Pipelined requests are answered in order,
+// and a connection stops being read while maxPendingBytes of responses are still unsent.
+@Slf4j
+@Component
+public class BinaryLookupServer implements SmartLifecycle {
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final GeolocationService geolocationService;
+    private final GeolocationProperties.Binary settings;
+    private final Counter[] requests;
+
+    private final List<EventLoop> loops = new ArrayList<>();
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+
+    public BinaryLookupServer(GeolocationService geolocationService, GeolocationProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.geolocationService = geolocationService;
+        this.settings = properties.getBinary();
+        String[] statuses = {"ok", "invalid", "unavailable", "error"};
+        this.requests = new Counter[statuses.length];
+        for (int i = 0; i < statuses.length; i++) {
+            requests[i] = Counter.builder("geolocation.binary.requests")
+                    .description("Lookups served by the binary listener")
+                    .tag("status", statuses[i])
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!settings.isEnabled() || running) {
+            return;
+        }
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            serverChannel.bind(new InetSocketAddress(settings.getHost(), settings.getPort()));
+            serverChannel.configureBlocking(false);
+
+            int threads = Math.max(1, settings.getThreads());
+            for (int i = 0; i < threads; i++) {
+                loops.add(new EventLoop(i));
+            }
+            // The first loop also accepts and hands connections out round-robin
+            loops.get(0).registerAccept(serverChannel);
+            // Set first: a loop that starts running before this would see false and exit at once
+            running = true;
+            loops.forEach(EventLoop::start);
+            log.info("Binary lookup listener started on {}:{} with {} threads",
+                    settings.getHost(), settings.getPort(), threads);
+        } catch (IOException e) {
+            running = false;
+            loops.forEach(EventLoop::shutdown);
+            loops.clear();
+            if (serverChannel != null) {
+                try {
+                    serverChannel.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            throw new IllegalStateException("Could not start binary lookup listener on port " + settings.getPort(), e);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        loops.forEach(EventLoop::shutdown);
+        loops.clear();
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            log.warn("Error closing binary lookup listener", e);
+        }
+        log.info("Binary lookup listener stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Actual bound port (useful with port 0)
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException | NullPointerException e) {
+            return -1;
+        }
+    }
+
+    // Answers one request frame body (after the length) into out
+    private void handle(ByteBuffer in, int length, ByteBuffer out) {
+        int id = in.getInt();
+        int profileIndex = in.get() & 0xFF;
+        int addressLength = in.get() & 0xFF;
+        if (addressLength != 4 && addressLength != 16 || length != 6 + addressLength) {
+            throw new IllegalArgumentException("Malformed request frame");
+        }
+        byte[] addressBytes = new byte[addressLength];
+        in.get(addressBytes);
+        IPAddress address = IPAddress.fromBytes(addressBytes);
+
+        int frameStart = out.position();
+        out.putInt(0); // length, patched below
+        out.putInt(id);
+        int status;
+        LookupProfile[] profiles = LookupProfile.values();
+        if (profileIndex >= profiles.length) {
+            status = BinaryProtocol.STATUS_INVALID;
+            out.put((byte) status);
+            GeoRecordCodec.writeError(out, address, "Unknown profile " + profileIndex);
+        } else {
+            try {
+                GeoLocationData data = geolocationService.getLocationByIP(address.toString(), profiles[profileIndex]);
+                status = BinaryProtocol.STATUS_OK;
+                out.put((byte) status);
+                GeoRecordCodec.write(out, data);
+            } catch (IllegalArgumentException e) {
+                status = BinaryProtocol.STATUS_INVALID;
+                out.put((byte) status);
+                GeoRecordCodec.writeError(out, address, "Invalid IP address");
+            } catch (IllegalStateException e) {
+                status = BinaryProtocol.STATUS_UNAVAILABLE;
+                out.put((byte) status);
+                GeoRecordCodec.writeError(out, address, "Service temporarily unavailable");
+            } catch (Exception e) {
+                log.debug("Binary lookup failed for {}", address, e);
+                status = BinaryProtocol.STATUS_ERROR;
+                out.put((byte) status);
+                GeoRecordCodec.writeError(out, address, "Lookup failed");
+            }
+        }
+        out.putInt(frameStart, out.position() - frameStart - 4);
+        requests[status].increment();
+    }
+
+    private final class EventLoop extends Thread {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+        EventLoop(int index) throws IOException {
+            super("binary-lookup-" + index);
+            setDaemon(true);
+            this.selector = Selector.open();
+        }
+
+        void registerAccept(ServerSocketChannel channel) throws IOException {
+            channel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+
+        void adopt(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        void shutdown() {
+            interrupt();
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException | ClosedSelectorException e) {
+                log.debug("Error closing binary lookup selector", e);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running && !isInterrupted()) {
+                try {
+                    selector.select();
+                    SocketChannel adopted;
+                    while ((adopted = pending.poll()) != null) {
+                        register(adopted);
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            log.debug("Closing binary lookup connection: {}", e.getMessage());
+                            connection.close();
+                        }
+                    }
+                } catch (ClosedSelectorException e) {
+                    return;
+                } catch (IOException e) {
+                    log.warn("Binary lookup event loop error", e);
+                }
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                EventLoop loop = loops.get(Math.floorMod(nextLoop.getAndIncrement(), loops.size()));
+                if (loop == this) {
+                    register(channel);
+                } else {
+                    loop.adopt(channel);
+                }
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(channel, key));
+            } catch (IOException e) {
+                log.debug("Could not register binary lookup connection", e);
+            }
+        }
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private ByteBuffer out = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void onReadable() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            serve();
+        }
+
+        void onWritable() throws IOException {
+            serve();
+        }
+
+        // Frames can be left in the read buffer when the backlog fills up. Once a flush brings the
+        // backlog under the limit they are answered straight away: a client that waits for its
+        // responses sends nothing more, so there would be no read event to pick them up.
+        private void serve() throws IOException {
+            do {
+                process();
+                flush();
+            } while (hasCompleteFrame() && out.position() < settings.getMaxPendingBytes());
+        }
+
+        private boolean hasCompleteFrame() {
+            return in.position() >= 4 && in.position() >= 4 + in.getInt(0);
+        }
+
+        // Answers every complete frame in the read buffer, until the write backlog is full
+        private void process() {
+            in.flip();
+            while (in.remaining() >= 4 && out.position() < settings.getMaxPendingBytes()) {
+                int length = in.getInt(in.position());
+                if (length < BinaryProtocol.MIN_REQUEST_LENGTH || length > BinaryProtocol.MAX_REQUEST_LENGTH) {
+                    throw new IllegalArgumentException("Bad frame length " + length);
+                }
+                if (in.remaining() < 4 + length) {
+                    break;
+                }
+                in.getInt();
+                ensureWritable(BinaryProtocol.MAX_RESPONSE_FRAME);
+                handle(in, length, out);
+            }
+            in.compact();
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+
+            int ops = out.position() > 0 ? SelectionKey.OP_WRITE : 0;
+            if (out.position() < settings.getMaxPendingBytes()) {
+                ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+        }
+
+        private void ensureWritable(int bytes) {
+            if (out.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+                out.flip();
+                larger.put(out);
+                out = larger;
+            }
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Error closing binary lookup connection", e);
+            }
+        }
+    }
+}
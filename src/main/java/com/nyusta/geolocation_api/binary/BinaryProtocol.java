@@ -0,0 +1,26 @@
+package com.nyusta.geolocation_api.binary;
+
+import com.nyusta.geolocation_api.codec.GeoRecordCodec;
+
+// Wire format of the binary lookup listener. Every frame starts with a u32 length of the bytes that
+// follow it; all integers are big-endian.
+//
+//   request:  u32 length | u32 id | u8 profile (LookupProfile ordinal) | u8 address length (4 or 16) | address
+//   response: u32 length | u32 id | u8 status | GeoRecordCodec record
+//
+// Requests may be pipelined; responses come back on the same connection in request order, and
+// carry the request id so clients can match them either way. Error statuses carry a not-found
+// record with the message.
+public final class BinaryProtocol {
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_INVALID = 1;
+    public static final int STATUS_UNAVAILABLE = 2;
+    public static final int STATUS_ERROR = 3;
+
+    public static final int MIN_REQUEST_LENGTH = 4 + 1 + 1 + 4;
+    public static final int MAX_REQUEST_LENGTH = 4 + 1 + 1 + 16;
+    public static final int MAX_RESPONSE_FRAME = 4 + 4 + 1 + GeoRecordCodec.MAX_RECORD_SIZE;
+
+    private BinaryProtocol() {
+    }
+}
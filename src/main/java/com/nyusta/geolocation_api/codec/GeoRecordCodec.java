@@ -0,0 +1,222 @@
+package com.nyusta.geolocation_api.codec;
+
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.utils.IPAddress;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Fixed-layout binary encoding of one GeoLocationData, shared by the HTTP converter and the binary
+// listener. Big-endian, a 36-byte fixed header followed by short length-prefixed strings:
+//
+//   u8  version (1)
+//   u8  flags        FOUND, EU_COUNTRY, PRIVATE_IP, HAS_LOCATION, HAS_ASN, IPV6
+//   u16 country      ISO 3166 alpha-2 as (c1 - 'A') * 26 + (c2 - 'A') + 1, 0 = unknown
+//   u8  continent    index into CONTINENTS + 1, 0 = unknown
+//   u8  prefix       network prefix length in the address's family
+//   u16 accuracy     accuracy radius in km, 0xFFFF = unknown
+//   f32 latitude, f32 longitude
+//   u32 asn
+//   16  address      IPv6, or IPv4-mapped (::ffff:a.b.c.d)
+//   then, each as u8 length + UTF-8 (truncated to 255 bytes):
+//     FOUND:     city, region, regionCode, postalCode, timezone, asnOrganization
+//     not FOUND: error
+//
+// Country and continent names are not sent; clients map the codes.
+public final class GeoRecordCodec {
+    public static final byte VERSION = 1;
+    public static final int HEADER_SIZE = 36;
+    public static final int MAX_RECORD_SIZE = HEADER_SIZE + 6 * 256;
+
+    public static final int FOUND = 1;
+    public static final int EU_COUNTRY = 1 << 1;
+    public static final int PRIVATE_IP = 1 << 2;
+    public static final int HAS_LOCATION = 1 << 3;
+    public static final int HAS_ASN = 1 << 4;
+    public static final int IPV6 = 1 << 5;
+
+    private static final String[] CONTINENTS = {"AF", "AN", "AS", "EU", "NA", "OC", "SA"};
+    private static final int UNKNOWN_ACCURACY = 0xFFFF;
+
+    private GeoRecordCodec() {
+    }
+
+    // Writes one record; the buffer needs MAX_RECORD_SIZE bytes remaining
+    public static void write(ByteBuffer out, GeoLocationData data) {
+        IPAddress address = IPAddress.parse(data.getIp());
+        boolean hasLocation = data.getLatitude() != null && data.getLongitude() != null;
+        int flags = FOUND
+                | (data.isEuCountry() ? EU_COUNTRY : 0)
+                | (data.isPrivateIP() ? PRIVATE_IP : 0)
+                | (hasLocation ? HAS_LOCATION : 0)
+                | (data.getAsn() != null ? HAS_ASN : 0)
+                | (address != null && !address.isIPv4() ? IPV6 : 0);
+
+        out.put(VERSION);
+        out.put((byte) flags);
+        out.putShort((short) countryIndex(data.getCountryCode()));
+        out.put((byte) continentIndex(data.getContinent()));
+        out.put((byte) prefixLength(data.getNetwork()));
+        out.putShort((short) (data.getAccuracyRadius() != null
+                ? Math.min(data.getAccuracyRadius(), UNKNOWN_ACCURACY - 1) : UNKNOWN_ACCURACY));
+        out.putFloat(hasLocation ? data.getLatitude().floatValue() : Float.NaN);
+        out.putFloat(hasLocation ? data.getLongitude().floatValue() : Float.NaN);
+        out.putInt(data.getAsn() != null ? data.getAsn().intValue() : 0);
+        putAddress(out, address);
+
+        putString(out, data.getCity());
+        putString(out, data.getRegion());
+        putString(out, data.getRegionCode());
+        putString(out, data.getPostalCode());
+        putString(out, data.getTimezone());
+        putString(out, data.getAsnOrganization());
+    }
+
+    // A not-found record carrying only the address and an error message
+    public static void writeError(ByteBuffer out, IPAddress address, String error) {
+        out.put(VERSION);
+        out.put((byte) (address != null && !address.isIPv4() ? IPV6 : 0));
+        out.putShort((short) 0);
+        out.put((byte) 0);
+        out.put((byte) 0);
+        out.putShort((short) UNKNOWN_ACCURACY);
+        out.putFloat(Float.NaN);
+        out.putFloat(Float.NaN);
+        out.putInt(0);
+        putAddress(out, address);
+        putString(out, error);
+    }
+
+    // Reads one record; throws IllegalArgumentException if the buffer doesn't hold a complete one
+    public static Record read(ByteBuffer in) {
+        try {
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported record version " + version);
+            }
+            int flags = in.get() & 0xFF;
+            int country = in.getShort() & 0xFFFF;
+            int continent = in.get() & 0xFF;
+            int prefix = in.get() & 0xFF;
+            int accuracy = in.getShort() & 0xFFFF;
+            float latitude = in.getFloat();
+            float longitude = in.getFloat();
+            long asn = in.getInt() & 0xFFFF_FFFFL;
+            byte[] addressBytes = new byte[16];
+            in.get(addressBytes);
+            IPAddress address = IPAddress.fromBytes(addressBytes);
+
+            GeoLocationData.GeoLocationDataBuilder builder = GeoLocationData.builder()
+                    .ip(address.toString())
+                    .isEuCountry((flags & EU_COUNTRY) != 0)
+                    .isPrivateIP((flags & PRIVATE_IP) != 0);
+            if ((flags & FOUND) == 0) {
+                return new Record(builder.build(), false, getString(in));
+            }
+
+            builder.countryCode(countryCode(country))
+                    .continent(continent > 0 && continent <= CONTINENTS.length ? CONTINENTS[continent - 1] : null)
+                    .network(address.toCidr(Math.min(prefix, address.bitLength())))
+                    .accuracyRadius(accuracy != UNKNOWN_ACCURACY ? accuracy : null);
+            if ((flags & HAS_LOCATION) != 0) {
+                builder.latitude((double) latitude).longitude((double) longitude);
+            }
+            if ((flags & HAS_ASN) != 0) {
+                builder.asn(asn);
+            }
+            builder.city(getString(in))
+                    .region(getString(in))
+                    .regionCode(getString(in))
+                    .postalCode(getString(in))
+                    .timezone(getString(in));
+            String organization = getString(in);
+            builder.asnOrganization(organization).isp(organization);
+            return new Record(builder.build(), true, null);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated geolocation record", e);
+        }
+    }
+
+    public static int countryIndex(String code) {
+        if (code == null || code.length() != 2) {
+            return 0;
+        }
+        int first = code.charAt(0) - 'A';
+        int second = code.charAt(1) - 'A';
+        if (first < 0 || first >= 26 || second < 0 || second >= 26) {
+            return 0;
+        }
+        return first * 26 + second + 1;
+    }
+
+    public static String countryCode(int index) {
+        if (index <= 0 || index > 26 * 26) {
+            return null;
+        }
+        int value = index - 1;
+        return new String(new char[]{(char) ('A' + value / 26), (char) ('A' + value % 26)});
+    }
+
+    private static int continentIndex(String code) {
+        if (code != null) {
+            for (int i = 0; i < CONTINENTS.length; i++) {
+                if (CONTINENTS[i].equals(code)) {
+                    return i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static int prefixLength(String network) {
+        if (network == null) {
+            return 0;
+        }
+        int slash = network.lastIndexOf('/');
+        if (slash < 0) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(network, slash + 1, network.length(), 10);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void putAddress(ByteBuffer out, IPAddress address) {
+        long high = address != null ? address.high() : 0L;
+        long low = address != null ? address.low() : 0L;
+        out.putLong(high);
+        out.putLong(low);
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.put((byte) 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 255);
+        // Don't cut a multi-byte character in half
+        while (length < bytes.length && length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        out.put((byte) length);
+        out.put(bytes, 0, length);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.get() & 0xFF;
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // A decoded record; error is only set when found is false
+    public record Record(GeoLocationData data, boolean found, String error) {
+    }
+}
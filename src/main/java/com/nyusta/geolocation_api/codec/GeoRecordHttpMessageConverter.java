@@ -0,0 +1,95 @@
+package com.nyusta.geolocation_api.codec;
+
+import com.nyusta.geolocation_api.payload.response.BatchGeoLocationResponse;
+import com.nyusta.geolocation_api.payload.response.GeoLocationResponse;
+import com.nyusta.geolocation_api.payload.response.GeoLocationResult;
+import com.nyusta.geolocation_api.utils.IPAddress;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Writes GeoLocationResponse and BatchGeoLocationResponse as GeoRecordCodec records for clients that
+// send Accept: application/x-geolocation-record. Envelope, big-endian:
+//   single: u8 1, f32 processingTime (ms), one record (a not-found record carries the error)
+//   batch:  u8 2, f32 processingTime (ms), u32 count, count records in request order
+//   error:  u8 3, u8 length + UTF-8 message (request-level batch failures)
+// Records are self-delimiting, so they are written one at a time rather than buffered whole.
+public class GeoRecordHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+    public static final MediaType MEDIA_TYPE = new MediaType("application", "x-geolocation-record");
+
+    private static final byte SINGLE = 1;
+    private static final byte BATCH = 2;
+    private static final byte ERROR = 3;
+
+    public GeoRecordHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return GeoLocationResponse.class.isAssignableFrom(clazz) || BatchGeoLocationResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Geolocation records are response-only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object object, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream out = outputMessage.getBody();
+        ByteBuffer buffer = ByteBuffer.allocate(GeoRecordCodec.MAX_RECORD_SIZE + 16);
+
+        if (object instanceof GeoLocationResponse response) {
+            buffer.put(SINGLE);
+            buffer.putFloat((float) response.getProcessingTime());
+            if (response.isSuccess() && response.getData() != null) {
+                GeoRecordCodec.write(buffer, response.getData());
+            } else {
+                GeoRecordCodec.writeError(buffer, null, response.getError());
+            }
+            flush(buffer, out);
+            return;
+        }
+
+        BatchGeoLocationResponse batch = (BatchGeoLocationResponse) object;
+        if (!batch.isSuccess() || batch.getResults() == null) {
+            buffer.put(ERROR);
+            byte[] message = String.valueOf(batch.getError()).getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(message.length, 255);
+            buffer.put((byte) length).put(message, 0, length);
+            flush(buffer, out);
+            return;
+        }
+
+        buffer.put(BATCH);
+        buffer.putFloat((float) batch.getProcessingTime());
+        buffer.putInt(batch.getResults().size());
+        flush(buffer, out);
+        for (GeoLocationResult result : batch.getResults()) {
+            if (result.isSuccess() && result.getData() != null) {
+                GeoRecordCodec.write(buffer, result.getData());
+            } else {
+                GeoRecordCodec.writeError(buffer, IPAddress.parse(result.getIp()), result.getError());
+            }
+            flush(buffer, out);
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, OutputStream out) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+}
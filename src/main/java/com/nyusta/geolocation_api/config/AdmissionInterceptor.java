@@ -0,0 +1,64 @@
+package com.nyusta.geolocation_api.config;
+
+import com.nyusta.geolocation_api.exception.AdmissionRejectedException;
+import com.nyusta.geolocation_api.service.AdmissionControl;
+import com.nyusta.geolocation_api.utils.ClientIpResolver;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.concurrent.TimeUnit;
+
+// Sheds load before a request reaches the controller: 429 when the client is over its rate, 503 when
+// too many lookups are already in progress. Rejections cost a hash and a CAS, so they stay cheap
+// even under the overload they protect against.
+@Component
+@RequiredArgsConstructor
+public class AdmissionInterceptor implements HandlerInterceptor {
+    private static final String ADMITTED = AdmissionInterceptor.class.getName() + ".admitted";
+
+    private final AdmissionControl admission;
+    private final ClientIpResolver clientIpResolver;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!admission.isEnabled() || request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+
+        long waitNanos = admission.tryAcquireToken(clientKey(request));
+        if (waitNanos > 0) {
+            long seconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            throw new AdmissionRejectedException(HttpStatus.TOO_MANY_REQUESTS, seconds, "Rate limit exceeded");
+        }
+        if (!admission.enter()) {
+            throw new AdmissionRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                    admission.getOverloadRetryAfterSeconds(), "Server overloaded, retry later");
+        }
+        request.setAttribute(ADMITTED, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (request.getAttribute(ADMITTED) != null) {
+            request.removeAttribute(ADMITTED);
+            admission.exit();
+        }
+    }
+
+    // A configured API key, so tenants behind a shared NAT aren't limited together. Anything else is
+    // keyed by address, or a client could dodge its limit by sending a new made-up key per request.
+    private String clientKey(HttpServletRequest request) {
+        String apiKey = request.getHeader(admission.getApiKeyHeader());
+        if (admission.isKnownApiKey(apiKey)) {
+            return "key:" + apiKey;
+        }
+        return "ip:" + clientIpResolver.resolve(request);
+    }
+}
@@ -1,16 +1,35 @@
 package com.nyusta.geolocation_api.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
 
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
 public class CacheConfig {
+    public static final String GEOLOCATIONS = "geolocations";
+
+    // Fallback when spring.cache.caffeine.spec is not set; the cache must never be unbounded
+    private static final String DEFAULT_SPEC = "maximumSize=10000,expireAfterWrite=1h";
+
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager("geolocations");
+    public CacheManager cacheManager(CacheProperties cacheProperties) {
+        String spec = cacheProperties.getCaffeine().getSpec();
+        Caffeine<Object, Object> caffeine = Caffeine.from(StringUtils.hasText(spec) ? spec : DEFAULT_SPEC)
+                .recordStats(); // always on so Actuator can bind hit/miss/eviction/load metrics
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(caffeine);
+        cacheManager.setCacheNames(List.of(GEOLOCATIONS));
+        return cacheManager;
     }
 }
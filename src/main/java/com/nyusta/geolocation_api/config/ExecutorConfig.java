@@ -0,0 +1,65 @@
+package com.nyusta.geolocation_api.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+// Pools for individual features, injected by name. They are Executor beans, so Boot's own
+// applicationTaskExecutor would back off; spring.task.execution.mode=force keeps it, and with it
+// the spring.task.execution.* settings for MVC async and @Async
+@Configuration
+public class ExecutorConfig {
+    @Bean
+    public ThreadPoolTaskExecutor batchLookupExecutor(GeolocationProperties properties) {
+        int threads = Math.max(1, properties.getBatch().getParallelism());
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(properties.getBatch().getQueueCapacity());
+        executor.setThreadNamePrefix("batch-lookup-");
+        // When the pool is saturated the submitting request thread does the work itself,
+        // so one large batch slows down its own caller instead of queueing unbounded work
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    // Runs bulk uploads; one thread per allowed concurrent job. A job that timed out while still
+    // queued gives its slot back before its task has run (and returned at once), so the queue
+    // holds as many jobs again rather than rejecting the next upload
+    @Bean
+    public ThreadPoolTaskExecutor bulkStreamExecutor(GeolocationProperties properties) {
+        int threads = Math.max(1, properties.getBulk().getMaxConcurrentJobs());
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads);
+        executor.setThreadNamePrefix("bulk-stream-");
+        return executor;
+    }
+
+    // Database downloads and loads run side by side; each thread handles one edition
+    @Bean
+    public ThreadPoolTaskExecutor databaseDownloadExecutor(MaxMindProperties properties) {
+        int threads = Math.max(1, properties.getDownload().getConcurrency());
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("db-download-");
+        return executor;
+    }
+
+    // Builds the reverse network index; one thread, so generations are indexed one after another
+    @Bean
+    public ThreadPoolTaskExecutor networkIndexExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("network-index-");
+        return executor;
+    }
+}
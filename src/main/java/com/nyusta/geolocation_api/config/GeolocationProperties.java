@@ -0,0 +1,119 @@
+package com.nyusta.geolocation_api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "geolocation")
+public class GeolocationProperties {
+    private Batch batch = new Batch();
+    private Bulk bulk = new Bulk();
+    private Response response = new Response();
+    private Binary binary = new Binary();
+    private Snapshot snapshot = new Snapshot();
+    private Admission admission = new Admission();
+    private ClientIp clientIp = new ClientIp();
+    private Pops pops = new Pops();
+    private Networks networks = new Networks();
+    private Analytics analytics = new Analytics();
+
+    @Data
+    public static class Batch {
+        private int maxSize = 1000;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int queueCapacity = 256;
+        private int minChunkSize = 16; // misses below this are resolved on the request thread
+    }
+
+    @Data
+    public static class Bulk {
+        private int maxConcurrentJobs = 4;
+        private int chunkSize = 256; // records per lookup task
+        private int maxInFlightChunks = 32; // bounds memory per upload; reading pauses when full
+        private int maxLineLength = 65536;
+        private Duration timeout = Duration.ofHours(6);
+    }
+
+    @Data
+    public static class Response {
+        // Serve network-cache hits from cached JSON bytes instead of re-serializing GeoLocationData
+        private boolean preSerialized = false;
+    }
+
+    @Data
+    public static class Binary {
+        private boolean enabled = false;
+        private String host = "0.0.0.0";
+        private int port = 7070;
+        private int threads = 2; // event loops; lookups run on them directly
+        private int maxPendingBytes = 1 << 20; // per connection; reading pauses while more is unsent
+    }
+
+    @Data
+    public static class Snapshot {
+        private boolean enabled = true;
+        private String path; // defaults to cache-snapshot.bin in maxmind.database-path
+        private int maxEntries = 20000; // hottest cache keys kept
+        private Duration interval = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Admission {
+        private boolean enabled = true;
+        private double requestsPerSecond = 50; // per client, sustained
+        private int burst = 100; // per client, requests allowed at once
+        private int stripes = 65536; // rate-limit slots; clients hashing to one slot share its budget
+        private String apiKeyHeader = "X-API-Key";
+        // Keys with a budget of their own; requests without one of these are limited by address
+        private List<String> apiKeys = new ArrayList<>();
+        private int maxConcurrent = 150; // lookups in progress; keep below server.tomcat.threads.max, 0 = unlimited
+        private int overloadRetryAfterSeconds = 1;
+    }
+
+    @Data
+    public static class ClientIp {
+        // Peers allowed to set forwarding headers; by default loopback and private ranges, where
+        // load balancers and ingress controllers usually live
+        private List<String> trustedProxies = new ArrayList<>(List.of(
+                "127.0.0.0/8", "::1/128", "10.0.0.0/8", "172.16.0.0/12", "192.168.0.0/16", "fc00::/7"));
+        // Checked in order; "Forwarded" is parsed as RFC 7239, the rest as comma-separated addresses
+        private List<String> headers = new ArrayList<>(List.of("X-Forwarded-For", "Forwarded", "X-Real-IP"));
+    }
+
+    @Data
+    public static class Pops {
+        private List<Pop> locations = new ArrayList<>();
+        private int defaultK = 3;
+        private int maxK = 10; // also the number of PoPs ranked and cached per network
+        private double defaultAccuracyRadius = 100; // km, when the City data has no radius for a network
+    }
+
+    @Data
+    public static class Pop {
+        private String id;
+        private String name;
+        private double latitude;
+        private double longitude;
+    }
+
+    @Data
+    public static class Networks {
+        // Reverse index from ASN and country to prefixes, rebuilt in the background per generation
+        private boolean enabled = true;
+    }
+
+    @Data
+    public static class Analytics {
+        private boolean enabled = true;
+        private Duration window = Duration.ofMinutes(1); // tumbling; each closed window is kept as a summary
+        private int retainedWindows = 60;
+        private int topK = 10;
+        private int stripes = 0; // counter stripes; 0 = twice the available cores
+    }
+}
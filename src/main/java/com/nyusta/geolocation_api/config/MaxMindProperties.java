@@ -1,9 +1,13 @@
 package com.nyusta.geolocation_api.config;
 
+import com.maxmind.db.Reader;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -16,4 +20,49 @@ public class MaxMindProperties {
     private int updateInterval = 7; // days
     private Map<String, String> databases;
     private Map<String, String> downloadUrls;
+    private Map<String, String> checksumUrls = new HashMap<>(); // defaults to the download URL with suffix=tar.gz.sha256
+    private Download download = new Download();
+    private Map<String, ReaderSettings> readers = new HashMap<>(); // keyed like databases
+    private LookupEngine lookupEngine = LookupEngine.MMDB;
+    private Map<String, List<String>> internalRanges = new HashMap<>(); // tag -> CIDRs, treated like private ranges
+
+    public ReaderSettings getReaderSettings(String dbType) {
+        return readers.getOrDefault(dbType, new ReaderSettings());
+    }
+
+    public String getChecksumUrl(String dbType) {
+        String url = checksumUrls.get(dbType);
+        if (url != null) {
+            return url;
+        }
+        String downloadUrl = downloadUrls.get(dbType);
+        if (downloadUrl == null) {
+            return null;
+        }
+        return downloadUrl.contains("suffix=tar.gz")
+                ? downloadUrl.replace("suffix=tar.gz", "suffix=tar.gz.sha256")
+                : downloadUrl + ".sha256";
+    }
+
+    public enum LookupEngine {
+        MMDB,     // walk the MMDB trees for every lookup
+        COMPILED  // compile IPv4 City + ASN into a range table on each load (IPv6 still uses MMDB)
+    }
+
+    @Data
+    public static class ReaderSettings {
+        // MEMORY_MAPPED keeps the file in the page cache (small heap, shared RSS);
+        // MEMORY copies it onto the heap (larger heap, no page faults on cold records)
+        private Reader.FileMode fileMode = Reader.FileMode.MEMORY_MAPPED;
+        private int cacheSize = 0; // decoded records to keep, 0 disables the cache
+    }
+
+    @Data
+    public static class Download {
+        private boolean verifyChecksum = true;
+        private Duration connectTimeout = Duration.ofSeconds(30);
+        private Duration readTimeout = Duration.ofMinutes(2); // longest silence on the socket, not the whole transfer
+        private int concurrency = 3; // editions downloaded (and opened) at once
+        private Duration retryDelay = Duration.ofMinutes(1); // while no database could be loaded at all
+    }
 }
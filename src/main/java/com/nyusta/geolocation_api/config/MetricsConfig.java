@@ -0,0 +1,47 @@
+package com.nyusta.geolocation_api.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MetricsConfig {
+    // Replaces Boot's JSON converter (same ObjectMapper) to time response serialization, which
+    // happens after the controller returns and so is missing from the lookup timers
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                   MeterRegistry meterRegistry) {
+        return new MappingJackson2HttpMessageConverter(objectMapper) {
+            // One per response class, so the write path doesn't build and look up a meter every time
+            private final Map<Class<?>, Timer> timers = new ConcurrentHashMap<>();
+
+            @Override
+            protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+                    throws IOException, HttpMessageNotWritableException {
+                long startTime = System.nanoTime();
+                try {
+                    super.writeInternal(object, type, outputMessage);
+                } finally {
+                    timers.computeIfAbsent(object.getClass(), responseClass -> Timer.builder("geolocation.serialization")
+                                    .description("JSON response serialization time")
+                                    .tag("type", responseClass.getSimpleName())
+                                    .publishPercentiles(0.5, 0.95, 0.99)
+                                    .publishPercentileHistogram()
+                                    .register(meterRegistry))
+                            .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                }
+            }
+        };
+    }
+}
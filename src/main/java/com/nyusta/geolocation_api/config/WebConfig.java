@@ -0,0 +1,32 @@
+package com.nyusta.geolocation_api.config;
+
+import com.nyusta.geolocation_api.codec.GeoRecordHttpMessageConverter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+    private final AdmissionInterceptor admissionInterceptor;
+
+    public WebConfig(AdmissionInterceptor admissionInterceptor) {
+        this.admissionInterceptor = admissionInterceptor;
+    }
+
+    // Bulk uploads are long-running and have their own job limit
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionInterceptor)
+                .addPathPatterns("/api/v1/geolocation", "/api/v1/geolocation/**")
+                .excludePathPatterns("/api/v1/geolocation/bulk", "/api/v1/geolocation/bulk/**");
+    }
+
+    // Appended after the JSON (and CBOR) converters so Accept: */* keeps getting JSON
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new GeoRecordHttpMessageConverter());
+    }
+}
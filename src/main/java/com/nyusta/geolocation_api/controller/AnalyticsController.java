@@ -0,0 +1,35 @@
+package com.nyusta.geolocation_api.controller;
+
+import com.nyusta.geolocation_api.payload.response.TrafficAnalyticsResponse;
+import com.nyusta.geolocation_api.service.TrafficAnalytics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/geolocation")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class AnalyticsController {
+    private final TrafficAnalytics trafficAnalytics;
+
+    // The open window plus up to windows= closed ones, most recent first
+    @GetMapping("/analytics")
+    public ResponseEntity<TrafficAnalyticsResponse> analytics(@RequestParam(defaultValue = "10") int windows) {
+        if (!trafficAnalytics.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(TrafficAnalyticsResponse.error("Traffic analytics are disabled"));
+        }
+        return ResponseEntity.ok(TrafficAnalyticsResponse.builder()
+                .success(true)
+                .windowSeconds(trafficAnalytics.getWindowSeconds())
+                .current(trafficAnalytics.currentWindow())
+                .windows(trafficAnalytics.recentWindows(windows))
+                .build());
+    }
+}
@@ -0,0 +1,114 @@
+package com.nyusta.geolocation_api.controller;
+
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import com.nyusta.geolocation_api.modal.BulkJob;
+import com.nyusta.geolocation_api.service.BulkEnrichmentService;
+import com.nyusta.geolocation_api.service.GeolocationService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/geolocation")
+@CrossOrigin(origins = "*")
+public class BulkEnrichmentController {
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+
+    private final BulkEnrichmentService bulkEnrichmentService;
+    private final GeolocationService geolocationService;
+    private final ThreadPoolTaskExecutor bulkStreamExecutor;
+    private final long timeoutMillis;
+
+    public BulkEnrichmentController(BulkEnrichmentService bulkEnrichmentService,
+                                    GeolocationService geolocationService,
+                                    @Qualifier("bulkStreamExecutor") ThreadPoolTaskExecutor bulkStreamExecutor,
+                                    GeolocationProperties properties) {
+        this.bulkEnrichmentService = bulkEnrichmentService;
+        this.geolocationService = geolocationService;
+        this.bulkStreamExecutor = bulkStreamExecutor;
+        this.timeoutMillis = properties.getBulk().getTimeout().toMillis();
+    }
+
+    // Streams the upload through the lookup pool and the enriched records back as they complete;
+    // neither side is ever buffered in full. The bulk executor and timeout are set on the task, so
+    // other async requests keep the MVC defaults.
+    @PostMapping(value = "/bulk", consumes = {NDJSON, CSV})
+    public Object enrich(HttpServletRequest request,
+                         HttpServletResponse response,
+                         @RequestHeader("Content-Type") String contentType,
+                         @RequestParam(defaultValue = "ip") String ipColumn) {
+        if (!geolocationService.isServiceAvailable()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        BulkEnrichmentService.Format format = contentType.startsWith(CSV)
+                ? BulkEnrichmentService.Format.CSV
+                : BulkEnrichmentService.Format.NDJSON;
+        BulkJob job;
+        try {
+            job = bulkEnrichmentService.start(format);
+        } catch (IllegalStateException e) {
+            log.warn("Rejected bulk upload: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        log.debug("Bulk {} upload started as job {}", job.getFormat(), job.getId());
+
+        // Whoever claims the job first releases its slot: the worker when its stream ends, or the
+        // completion callback if the request ended before the worker started (timed out in the
+        // queue, or rejected). A worker still streaming then holds the slot until it stops.
+        AtomicBoolean claimed = new AtomicBoolean();
+        // Headers are only set once the task runs, so a rejected task can still render an error
+        WebAsyncTask<Void> task = new WebAsyncTask<>(timeoutMillis, bulkStreamExecutor, () -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                response.setContentType(format == BulkEnrichmentService.Format.CSV ? CSV : NDJSON);
+                response.setHeader("X-Bulk-Job-Id", job.getId());
+                try (InputStream in = request.getInputStream()) {
+                    bulkEnrichmentService.enrich(job, format, in, response.getOutputStream(), ipColumn);
+                }
+            } finally {
+                bulkEnrichmentService.finish(job);
+            }
+            return null;
+        });
+        task.onTimeout(() -> {
+            log.warn("Bulk job {} timed out after {} ms", job.getId(), timeoutMillis);
+            job.cancel();
+            return null;
+        });
+        // Also runs after a timeout, an error, a client abort or a rejected task. The request and
+        // response are recycled after this, so a worker still streaming stops at its next chunk
+        task.onCompletion(() -> {
+            job.cancel();
+            if (claimed.compareAndSet(false, true)) {
+                bulkEnrichmentService.finish(job);
+            }
+        });
+        return task;
+    }
+
+    @GetMapping("/bulk/jobs")
+    public ResponseEntity<Collection<BulkJob>> getActiveJobs() {
+        return ResponseEntity.ok(bulkEnrichmentService.getActiveJobs());
+    }
+}
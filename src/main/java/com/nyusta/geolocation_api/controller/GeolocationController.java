@@ -1,14 +1,23 @@
 package com.nyusta.geolocation_api.controller;
 
+import com.nyusta.geolocation_api.config.GeolocationProperties;
 import com.nyusta.geolocation_api.modal.GeoLocationData;
 import com.nyusta.geolocation_api.payload.request.GeoLocationRequest;
+import com.nyusta.geolocation_api.payload.response.BatchGeoLocationResponse;
 import com.nyusta.geolocation_api.payload.response.GeoLocationResponse;
+import com.nyusta.geolocation_api.service.BatchGeolocationService;
 import com.nyusta.geolocation_api.service.GeolocationService;
-import com.nyusta.geolocation_api.utils.IPUtils;
+import com.nyusta.geolocation_api.service.LookupProfile;
+import com.nyusta.geolocation_api.service.SerializedResponseCache;
+import com.nyusta.geolocation_api.utils.ClientIpResolver;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,10 +25,13 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @RestController
@@ -28,17 +40,35 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class GeolocationController {
     private final GeolocationService geolocationService;
+    private final BatchGeolocationService batchGeolocationService;
+    private final SerializedResponseCache serializedResponseCache;
+    private final GeolocationProperties properties;
+    private final ClientIpResolver clientIpResolver;
 
     @GetMapping
-    public ResponseEntity<GeoLocationResponse> getCurrentLocation(HttpServletRequest request) {
-        long startTime = System.currentTimeMillis();
+    public ResponseEntity<?> getCurrentLocation(HttpServletRequest request,
+                                                @RequestParam(required = false) String profile,
+                                                @RequestParam(required = false) String fields) {
+        long startTime = System.nanoTime();
 
+        Projection projection;
         try {
-            String clientIP = IPUtils.getClientIpAddress(request);
+            projection = Projection.of(profile, fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(GeoLocationResponse.error(e.getMessage()));
+        }
+
+        try {
+            String clientIP = clientIpResolver.resolve(request);
             log.debug("Geolocation request for client IP: {}", clientIP);
 
-            GeoLocationData locationData = geolocationService.getLocationByIP(clientIP);
-            long processingTime = System.currentTimeMillis() - startTime;
+            ResponseEntity<byte[]> preSerialized = projection.isFull() ? preSerializedHit(request, clientIP, startTime) : null;
+            if (preSerialized != null) {
+                return preSerialized;
+            }
+
+            GeoLocationData locationData = projection.apply(geolocationService.getLocationByIP(clientIP, projection.profile()));
+            double processingTime = elapsedMillis(startTime);
 
             return ResponseEntity.ok(GeoLocationResponse.success(locationData, processingTime));
 
@@ -54,14 +84,29 @@ public class GeolocationController {
     }
 
     @GetMapping("/{ip}")
-    public ResponseEntity<GeoLocationResponse> getLocationByIP(@PathVariable String ip) {
-        long startTime = System.currentTimeMillis();
+    public ResponseEntity<?> getLocationByIP(@PathVariable String ip,
+                                             HttpServletRequest request,
+                                             @RequestParam(required = false) String profile,
+                                             @RequestParam(required = false) String fields) {
+        long startTime = System.nanoTime();
+
+        Projection projection;
+        try {
+            projection = Projection.of(profile, fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(GeoLocationResponse.error(e.getMessage()));
+        }
 
         try {
             log.debug("Geolocation request for IP: {}", ip);
 
-            GeoLocationData locationData = geolocationService.getLocationByIP(ip);
-            long processingTime = System.currentTimeMillis() - startTime;
+            ResponseEntity<byte[]> preSerialized = projection.isFull() ? preSerializedHit(request, ip, startTime) : null;
+            if (preSerialized != null) {
+                return preSerialized;
+            }
+
+            GeoLocationData locationData = projection.apply(geolocationService.getLocationByIP(ip, projection.profile()));
+            double processingTime = elapsedMillis(startTime);
 
             return ResponseEntity.ok(GeoLocationResponse.success(locationData, processingTime));
 
@@ -75,4 +120,88 @@ public class GeolocationController {
                     .body(GeoLocationResponse.error("Internal server error"));
         }
     }
+
+    @PostMapping("/batch")
+    public ResponseEntity<BatchGeoLocationResponse> getLocationsByIP(@Valid @RequestBody GeoLocationRequest request) {
+        long startTime = System.nanoTime();
+
+        try {
+            log.debug("Batch geolocation request for {} IPs", request.getIps().size());
+
+            BatchGeoLocationResponse response = batchGeolocationService.getLocationsByIP(request.getIps());
+            response.setProcessingTime(elapsedMillis(startTime));
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid batch request: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(BatchGeoLocationResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            log.error("Service unavailable for batch request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(BatchGeoLocationResponse.error("Service temporarily unavailable"));
+        } catch (Exception e) {
+            log.error("Error processing batch geolocation request", e);
+            return ResponseEntity.internalServerError()
+                    .body(BatchGeoLocationResponse.error("Internal server error"));
+        }
+    }
+
+    // profile= names a lookup plan; fields= picks the cheapest plan covering them and trims the output
+    private record Projection(LookupProfile profile, Set<String> fields) {
+        static Projection of(String profile, String fields) {
+            if (fields != null && !fields.isBlank()) {
+                Set<String> selected = LookupProfile.parseFields(fields);
+                return new Projection(LookupProfile.forFields(selected), selected);
+            }
+            return new Projection(LookupProfile.named(profile), null);
+        }
+
+        boolean isFull() {
+            return profile == LookupProfile.FULL && fields == null;
+        }
+
+        GeoLocationData apply(GeoLocationData data) {
+            return fields != null ? LookupProfile.project(data, fields) : data;
+        }
+    }
+
+    // Cache hits written from cached JSON bytes when enabled; null means take the normal path
+    private ResponseEntity<byte[]> preSerializedHit(HttpServletRequest request, String ip, long startTime) {
+        if (!properties.getResponse().isPreSerialized() || !acceptsJson(request.getHeader(HttpHeaders.ACCEPT))) {
+            return null;
+        }
+        byte[] body = serializedResponseCache.successBody(ip, startTime);
+        return body != null ? ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body) : null;
+    }
+
+    // Only when every type the client ranks highest is JSON-compatible; binary clients (CBOR,
+    // geolocation records) go through content negotiation instead. All of them have to agree
+    // because negotiation breaks quality ties by specificity, so "*/*, application/cbor" is CBOR.
+    private static boolean acceptsJson(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return true;
+        }
+        try {
+            List<MediaType> types = MediaType.parseMediaTypes(accept);
+            double best = types.stream().mapToDouble(MediaType::getQualityValue).max().orElse(1);
+            if (best <= 0) {
+                return false;
+            }
+            for (MediaType type : types) {
+                if (type.getQualityValue() == best && !type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    // Fractional milliseconds; cache hits finish well under 1 ms
+    private static double elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
 }
@@ -0,0 +1,86 @@
+package com.nyusta.geolocation_api.controller;
+
+import com.nyusta.geolocation_api.payload.response.GeoLocationResponse;
+import com.nyusta.geolocation_api.service.NetworkIndex;
+import com.nyusta.geolocation_api.service.NetworkIndexService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/geolocation")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class NetworkController {
+    private static final int RETRY_AFTER_SECONDS = 30;
+
+    private final NetworkIndexService networkIndexService;
+
+    // Every network assigned to asn= or country=, one CIDR per line for firewall and allow-list
+    // tooling. aggregate=true collapses adjacent networks into the fewest covering CIDRs.
+    // Written straight from the index to the response stream on the request thread: the slice is
+    // already in memory, so an async StreamingResponseBody would only contend with bulk uploads
+    // for their executor.
+    @GetMapping("/networks")
+    public ResponseEntity<?> networks(@RequestParam(required = false) Long asn,
+                                      @RequestParam(required = false) String country,
+                                      @RequestParam(defaultValue = "false") boolean aggregate,
+                                      @RequestParam(defaultValue = "all") String family,
+                                      HttpServletResponse response) throws IOException {
+        if ((asn == null) == (country == null || country.isBlank())) {
+            return ResponseEntity.badRequest().body(GeoLocationResponse.error("Specify exactly one of asn or country"));
+        }
+        NetworkIndex.Family selected;
+        try {
+            selected = NetworkIndex.Family.valueOf(family.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(GeoLocationResponse.error("Unknown family: " + family));
+        }
+
+        NetworkIndex index = networkIndexService.isEnabled() ? networkIndexService.getIndex() : null;
+        if (index == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                    .body(GeoLocationResponse.error(networkIndexService.isEnabled()
+                            ? "Network index is still building" : "Network index is disabled"));
+        }
+
+        NetworkIndex.Prefixes prefixes = asn != null
+                ? index.byAsn(asn, selected)
+                : index.byCountry(country.trim().toUpperCase(Locale.ROOT), selected);
+        if (aggregate) {
+            prefixes = prefixes.aggregate();
+        }
+        log.debug("Listing {} networks for {}", prefixes.size(), asn != null ? "AS" + asn : country);
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.US_ASCII.name());
+        response.setHeader("X-Database-Generation", String.valueOf(index.getGeneration()));
+        response.setHeader("X-Network-Count", String.valueOf(prefixes.size()));
+        Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.US_ASCII));
+        for (int i = 0; i < prefixes.size(); i++) {
+            out.write(prefixes.cidr(i));
+            out.write('\n');
+        }
+        out.flush();
+        return null;
+    }
+}
@@ -0,0 +1,72 @@
+package com.nyusta.geolocation_api.controller;
+
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.payload.response.NearestPopResponse;
+import com.nyusta.geolocation_api.service.PopLocator;
+import com.nyusta.geolocation_api.utils.ClientIpResolver;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/geolocation")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class PopController {
+    private final PopLocator popLocator;
+    private final ClientIpResolver clientIpResolver;
+
+    // k nearest PoPs to ip=, or to the caller when it's omitted
+    @GetMapping("/pops/nearest")
+    public ResponseEntity<NearestPopResponse> nearest(HttpServletRequest request,
+                                                      @RequestParam(required = false) String ip,
+                                                      @RequestParam(required = false) Integer k) {
+        long startTime = System.nanoTime();
+        if (!popLocator.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(NearestPopResponse.error("No PoPs configured"));
+        }
+
+        String target = ip != null && !ip.isBlank() ? ip.trim() : clientIpResolver.resolve(request);
+        try {
+            PopLocator.Result result = popLocator.nearest(target, k);
+            GeoLocationData location = result.location();
+            if (result.pops().isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(NearestPopResponse.error("No coordinates for IP: " + target));
+            }
+
+            return ResponseEntity.ok(NearestPopResponse.builder()
+                    .success(true)
+                    .ip(target)
+                    .network(location.getNetwork())
+                    .latitude(location.getLatitude())
+                    .longitude(location.getLongitude())
+                    .accuracyRadius(location.getAccuracyRadius())
+                    .pops(result.pops())
+                    .processingTime((System.nanoTime() - startTime) / 1_000_000.0)
+                    .build());
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid nearest-PoP request for {}: {}", target, e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(NearestPopResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            log.error("Service unavailable for nearest-PoP request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(NearestPopResponse.error("Service temporarily unavailable"));
+        } catch (Exception e) {
+            log.error("Error finding nearest PoPs for IP: {}", target, e);
+            return ResponseEntity.internalServerError()
+                    .body(NearestPopResponse.error("Internal server error"));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.nyusta.geolocation_api.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+// Published by MaxMindDatabaseService after a new set of databases has been loaded
+@Getter
+@AllArgsConstructor
+public class DatabaseUpdatedEvent {
+    private final long generation;
+    private final Instant loadedAt;
+}
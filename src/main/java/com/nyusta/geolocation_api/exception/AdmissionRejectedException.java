@@ -0,0 +1,17 @@
+package com.nyusta.geolocation_api.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+// Thrown by the admission interceptor; rendered by GlobalExceptionHandler with a Retry-After header
+@Getter
+public class AdmissionRejectedException extends RuntimeException {
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(HttpStatus status, long retryAfterSeconds, String message) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
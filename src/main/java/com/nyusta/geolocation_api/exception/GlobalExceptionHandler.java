@@ -2,6 +2,8 @@ package com.nyusta.geolocation_api.exception;
 
 import com.nyusta.geolocation_api.payload.response.GeoLocationResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -25,6 +27,23 @@ public class GlobalExceptionHandler {
                 .body(GeoLocationResponse.error("Service temporarily unavailable"));
     }
 
+    // Shed load: logged at debug, since under overload there is one of these per request
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<GeoLocationResponse> handleAdmissionRejected(AdmissionRejectedException e) {
+        log.debug("Request rejected: {}", e.getMessage());
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(GeoLocationResponse.error(e.getMessage()));
+    }
+
+    // A bulk upload the stream executor had no room for; its job slot is released on completion
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<GeoLocationResponse> handleTaskRejected(TaskRejectedException e) {
+        log.warn("Task rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(GeoLocationResponse.error("Service temporarily unavailable"));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<GeoLocationResponse> handleValidationException(MethodArgumentNotValidException e) {
         String message = e.getBindingResult().getFieldError() != null ?
@@ -0,0 +1,33 @@
+package com.nyusta.geolocation_api.modal;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Progress of one streaming enrichment upload; serialized as-is by GET /bulk/jobs
+@Getter
+public class BulkJob {
+    private final String id;
+    private final String format;
+    private final Instant startedAt = Instant.now();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    // Set once the request is over; the stream stops at the next chunk instead of writing on
+    private volatile boolean cancelled;
+
+    public BulkJob(String id, String format) {
+        this.id = id;
+        this.format = format;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public double getRecordsPerSecond() {
+        long elapsedMillis = Math.max(1, Duration.between(startedAt, Instant.now()).toMillis());
+        return records.get() * 1000.0 / elapsedMillis;
+    }
+}
@@ -7,7 +7,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -27,8 +27,10 @@ public class GeoLocationData {
     private Long asn;
     private String asnOrganization;
     private Integer accuracyRadius;
+    private String network;
     private String source;
     private Long timestamp;
     private boolean isEuCountry;
     private boolean isPrivateIP;
+    private String reservedRange; // e.g. "private", "CGNAT", "link-local" or a configured internal tag
 }
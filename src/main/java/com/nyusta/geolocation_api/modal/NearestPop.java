@@ -0,0 +1,21 @@
+package com.nyusta.geolocation_api.modal;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NearestPop {
+    private String id;
+    private String name;
+    private double latitude;
+    private double longitude;
+    private double distanceKm; // great-circle, from the network's coordinates
+    private double weight; // share of traffic to send here given the location's accuracy radius; sums to 1
+}
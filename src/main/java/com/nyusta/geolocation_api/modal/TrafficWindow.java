@@ -0,0 +1,41 @@
+package com.nyusta.geolocation_api.modal;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+// Summary of one tumbling window of lookups; every count is a sketch estimate
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TrafficWindow {
+    private Instant start;
+    private Instant end; // null while the window is still open
+    private long lookups;
+    private long reserved; // private and other reserved addresses, not attributed to a country or ASN
+    private long located; // lookups that resolved to a country
+    private long euLookups;
+    private double euShare; // euLookups / located
+    private long uniqueIps;
+    private List<HeavyHitter> topCountries;
+    private List<HeavyHitter> topAsns;
+    private Map<String, Long> uniqueIpsByCountry;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class HeavyHitter {
+        private String key; // ISO country code or ASN
+        private long lookups;
+        private Long uniqueIps; // countries only
+    }
+}
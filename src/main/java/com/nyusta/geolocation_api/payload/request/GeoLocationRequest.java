@@ -1,10 +1,13 @@
 package com.nyusta.geolocation_api.payload.request;
 
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -12,4 +15,8 @@ public class GeoLocationRequest {
     @Pattern(regexp = "^((25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}(25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)$",
             message = "Invalid IP address format")
     private String ip;
+
+    // Batch lookups; individual entries are validated per item so one bad IP doesn't fail the whole batch
+    @NotEmpty(message = "At least one IP address is required")
+    private List<String> ips;
 }
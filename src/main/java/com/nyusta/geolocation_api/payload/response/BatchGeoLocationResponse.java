@@ -0,0 +1,42 @@
+package com.nyusta.geolocation_api.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchGeoLocationResponse {
+    private boolean success;
+    private List<GeoLocationResult> results;
+    private Integer requested;
+    private Integer unique;
+    private Integer cacheHits;
+    private String error;
+    private double processingTime; // milliseconds
+
+    public static BatchGeoLocationResponse success(List<GeoLocationResult> results, int unique,
+                                                   int cacheHits, double processingTime) {
+        return BatchGeoLocationResponse.builder()
+                .success(true)
+                .results(results)
+                .requested(results.size())
+                .unique(unique)
+                .cacheHits(cacheHits)
+                .processingTime(processingTime)
+                .build();
+    }
+    public static BatchGeoLocationResponse error(String error) {
+        return BatchGeoLocationResponse.builder()
+                .success(false)
+                .error(error)
+                .build();
+    }
+}
@@ -17,9 +17,9 @@ public class GeoLocationResponse {
     private String message;
     private GeoLocationData data;
     private String error;
-    private long processingTime;
+    private double processingTime; // milliseconds
 
-    public static GeoLocationResponse success(GeoLocationData data, long processingTime) {
+    public static GeoLocationResponse success(GeoLocationData data, double processingTime) {
         return GeoLocationResponse.builder()
                 .success(true)
                 .data(data)
@@ -0,0 +1,35 @@
+package com.nyusta.geolocation_api.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GeoLocationResult {
+    private String ip;
+    private boolean success;
+    private GeoLocationData data;
+    private String error;
+
+    public static GeoLocationResult success(String ip, GeoLocationData data) {
+        return GeoLocationResult.builder()
+                .ip(ip)
+                .success(true)
+                .data(data)
+                .build();
+    }
+    public static GeoLocationResult error(String ip, String error) {
+        return GeoLocationResult.builder()
+                .ip(ip)
+                .success(false)
+                .error(error)
+                .build();
+    }
+}
@@ -0,0 +1,34 @@
+package com.nyusta.geolocation_api.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.nyusta.geolocation_api.modal.NearestPop;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NearestPopResponse {
+    private boolean success;
+    private String ip;
+    private String network;
+    private Double latitude;
+    private Double longitude;
+    private Integer accuracyRadius; // km
+    private List<NearestPop> pops;
+    private String error;
+    private double processingTime; // milliseconds
+
+    public static NearestPopResponse error(String error) {
+        return NearestPopResponse.builder()
+                .success(false)
+                .error(error)
+                .build();
+    }
+}
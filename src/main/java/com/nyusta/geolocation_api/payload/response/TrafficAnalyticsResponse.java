@@ -0,0 +1,30 @@
+package com.nyusta.geolocation_api.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.nyusta.geolocation_api.modal.TrafficWindow;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TrafficAnalyticsResponse {
+    private boolean success;
+    private Long windowSeconds;
+    private TrafficWindow current;
+    private List<TrafficWindow> windows; // most recent first
+    private String error;
+
+    public static TrafficAnalyticsResponse error(String error) {
+        return TrafficAnalyticsResponse.builder()
+                .success(false)
+                .error(error)
+                .build();
+    }
+}
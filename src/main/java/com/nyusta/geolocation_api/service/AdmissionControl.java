@@ -0,0 +1,125 @@
+package com.nyusta.geolocation_api.service;
+
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Admission in front of the lookup endpoints: a per-client rate limit and a global cap on lookups in
+// progress. Both are lock-free and allocation-free on the request path.
+//
+// The rate limit is a token bucket in GCRA form: each slot holds the client's theoretical arrival
+// time, and a request is admitted if advancing it by one emission interval stays within the burst
+// tolerance. Slots live in a fixed striped array indexed by a hash of the client key, so memory
+// stays bounded however many addresses a scanner rotates through; the cost is that clients hashing
+// to the same slot share a budget.
+@Component
+public class AdmissionControl {
+    public enum Rejection {
+        RATE_LIMITED, OVERLOADED
+    }
+
+    private final GeolocationProperties.Admission settings;
+    private final Set<String> apiKeys;
+    private final AtomicLongArray arrivals; // theoretical arrival time per slot, nanos since origin
+    private final int mask;
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final long origin = System.nanoTime();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter[] rejections;
+    private final Counter admitted;
+
+    public AdmissionControl(GeolocationProperties properties, MeterRegistry meterRegistry) {
+        this.settings = properties.getAdmission();
+        this.apiKeys = Set.copyOf(settings.getApiKeys());
+        int stripes = Integer.highestOneBit(Math.max(1, settings.getStripes() - 1) << 1);
+        this.arrivals = new AtomicLongArray(stripes);
+        this.mask = stripes - 1;
+        this.emissionInterval = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(settings.getRequestsPerSecond(), 1e-3));
+        this.burstTolerance = emissionInterval * Math.max(1, settings.getBurst());
+
+        rejections = new Counter[Rejection.values().length];
+        for (Rejection rejection : Rejection.values()) {
+            rejections[rejection.ordinal()] = Counter.builder("geolocation.admission.rejected")
+                    .description("Requests shed before reaching the lookup path")
+                    .tag("reason", rejection.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+        admitted = Counter.builder("geolocation.admission.admitted")
+                .description("Requests let through to the lookup path")
+                .register(meterRegistry);
+        Gauge.builder("geolocation.admission.inflight", inFlight, AtomicInteger::get)
+                .description("Admitted requests still in progress")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    // 0 if the client may proceed, otherwise nanoseconds until it may retry
+    public long tryAcquireToken(String client) {
+        int slot = spread(client.hashCode()) & mask;
+        long now = System.nanoTime() - origin;
+        while (true) {
+            long arrival = arrivals.get(slot);
+            long next = Math.max(arrival, now) + emissionInterval;
+            long excess = next - now - burstTolerance;
+            if (excess > 0) {
+                rejections[Rejection.RATE_LIMITED.ordinal()].increment();
+                return excess;
+            }
+            if (arrivals.compareAndSet(slot, arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // Every successful enter() must be paired with exit()
+    public boolean enter() {
+        int limit = settings.getMaxConcurrent();
+        while (true) {
+            int current = inFlight.get();
+            if (limit > 0 && current >= limit) {
+                rejections[Rejection.OVERLOADED.ordinal()].increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.increment();
+                return true;
+            }
+        }
+    }
+
+    public void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getOverloadRetryAfterSeconds() {
+        return settings.getOverloadRetryAfterSeconds();
+    }
+
+    public String getApiKeyHeader() {
+        return settings.getApiKeyHeader();
+    }
+
+    public boolean isKnownApiKey(String apiKey) {
+        return apiKey != null && apiKeys.contains(apiKey);
+    }
+
+    // String hash codes of similar keys (consecutive addresses) differ mostly in the low bits
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+}
@@ -0,0 +1,132 @@
+package com.nyusta.geolocation_api.service;
+
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.payload.response.BatchGeoLocationResponse;
+import com.nyusta.geolocation_api.payload.response.GeoLocationResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@Slf4j
+@Service
+public class BatchGeolocationService {
+    private final GeolocationService geolocationService;
+    private final GeolocationProperties properties;
+    private final TaskExecutor executor;
+
+    public BatchGeolocationService(GeolocationService geolocationService,
+                                   GeolocationProperties properties,
+                                   @Qualifier("batchLookupExecutor") TaskExecutor executor) {
+        this.geolocationService = geolocationService;
+        this.properties = properties;
+        this.executor = executor;
+    }
+
+    public BatchGeoLocationResponse getLocationsByIP(List<String> ips) {
+        int maxSize = properties.getBatch().getMaxSize();
+        if (ips.size() > maxSize) {
+            throw new IllegalArgumentException("Batch size " + ips.size() + " exceeds maximum of " + maxSize);
+        }
+        if (!geolocationService.isServiceAvailable()) {
+            throw new IllegalStateException("MaxMind database service not initialized");
+        }
+
+        // Dedupe while keeping first-seen order
+        LinkedHashSet<String> unique = new LinkedHashSet<>();
+        for (String ip : ips) {
+            unique.add(normalize(ip));
+        }
+
+        Map<String, GeoLocationResult> resolved = new HashMap<>(unique.size() * 2);
+        List<String> misses = new ArrayList<>();
+        int cacheHits = 0;
+
+        for (String ip : unique) {
+            if (ip.isEmpty()) {
+                resolved.put(ip, GeoLocationResult.error(ip, "IP address is required"));
+                continue;
+            }
+            GeoLocationData cached = geolocationService.getCachedLocationByIP(ip);
+            if (cached != null) {
+                resolved.put(ip, GeoLocationResult.success(ip, cached));
+                cacheHits++;
+            } else {
+                misses.add(ip);
+            }
+        }
+
+        GeoLocationResult[] missResults = resolveMisses(misses);
+        for (int i = 0; i < misses.size(); i++) {
+            resolved.put(misses.get(i), missResults[i]);
+        }
+
+        List<GeoLocationResult> results = new ArrayList<>(ips.size());
+        for (String ip : ips) {
+            results.add(resolved.get(normalize(ip)));
+        }
+
+        log.debug("Batch lookup: {} requested, {} unique, {} cache hits", ips.size(), unique.size(), cacheHits);
+        return BatchGeoLocationResponse.success(results, unique.size(), cacheHits, 0);
+    }
+
+    private GeoLocationResult[] resolveMisses(List<String> misses) {
+        GeoLocationResult[] results = new GeoLocationResult[misses.size()];
+        int minChunk = Math.max(1, properties.getBatch().getMinChunkSize());
+        int chunks = Math.min(Math.max(1, properties.getBatch().getParallelism()), misses.size() / minChunk);
+
+        if (chunks <= 1) {
+            resolveRange(misses, results, 0, misses.size());
+            return results;
+        }
+
+        // Split the misses into contiguous ranges, one task per core; each task writes its own slots
+        int chunkSize = (misses.size() + chunks - 1) / chunks;
+        List<CompletableFuture<Void>> futures = new ArrayList<>(chunks);
+        for (int from = 0; from < misses.size(); from += chunkSize) {
+            int start = from;
+            int end = Math.min(misses.size(), from + chunkSize);
+            futures.add(CompletableFuture.runAsync(() -> resolveRange(misses, results, start, end), executor));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    private void resolveRange(List<String> misses, GeoLocationResult[] results, int start, int end) {
+        for (int i = start; i < end; i++) {
+            String ip = misses.get(i);
+            try {
+                // Full lookup; stores the result in the network cache for later requests
+                results[i] = GeoLocationResult.success(ip, geolocationService.getLocationByIP(ip));
+            } catch (IllegalArgumentException e) {
+                results[i] = GeoLocationResult.error(ip, "Invalid IP address: " + ip);
+            } catch (IllegalStateException e) {
+                throw e;
+            } catch (Exception e) {
+                log.warn("Batch lookup failed for IP: {}", ip, e);
+                results[i] = GeoLocationResult.error(ip, "Lookup failed");
+            }
+        }
+    }
+
+    private static String normalize(String ip) {
+        return ip == null ? "" : ip.trim();
+    }
+}
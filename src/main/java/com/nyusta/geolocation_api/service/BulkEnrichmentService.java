@@ -0,0 +1,444 @@
+package com.nyusta.geolocation_api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import com.nyusta.geolocation_api.modal.BulkJob;
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.utils.IPAddress;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+// Streams NDJSON or CSV uploads through the lookup pool and writes enriched records back in input
+// order as they complete. Records are processed in chunks with a fixed number of chunks in flight;
+// once the window is full, reading stops until the oldest chunk has been written, so memory per
+// upload is bounded by chunkSize * maxInFlightChunks regardless of the upload size.
+@Slf4j
+@Service
+public class BulkEnrichmentService {
+    private static final String CSV_GEO_COLUMNS = "country_code,country,region,city,postal_code,latitude,"
+            + "longitude,timezone,asn,asn_organization,network,error";
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private final GeolocationService geolocationService;
+    private final GeolocationProperties.Bulk settings;
+    private final TaskExecutor executor;
+    private final ObjectMapper objectMapper;
+    private final Semaphore slots;
+    private final Map<String, BulkJob> activeJobs = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public BulkEnrichmentService(GeolocationService geolocationService,
+                                 GeolocationProperties properties,
+                                 @Qualifier("batchLookupExecutor") TaskExecutor executor,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        this.geolocationService = geolocationService;
+        this.settings = properties.getBulk();
+        this.executor = executor;
+        this.objectMapper = objectMapper;
+        this.slots = new Semaphore(settings.getMaxConcurrentJobs());
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("geolocation.bulk.active", activeJobs, Map::size)
+                .description("Streaming enrichment uploads in progress")
+                .register(meterRegistry);
+    }
+
+    public BulkJob start(Format format) {
+        if (!slots.tryAcquire()) {
+            throw new IllegalStateException("Too many concurrent bulk uploads");
+        }
+        BulkJob job = new BulkJob(UUID.randomUUID().toString(), format.name().toLowerCase());
+        activeJobs.put(job.getId(), job);
+        return job;
+    }
+
+    public Collection<BulkJob> getActiveJobs() {
+        return activeJobs.values();
+    }
+
+    public void enrich(BulkJob job, Format format, InputStream in, OutputStream out, String ipColumn) throws IOException {
+        Counter records = Counter.builder("geolocation.bulk.records")
+                .tag("format", job.getFormat()).tag("outcome", "success").register(meterRegistry);
+        Counter errors = Counter.builder("geolocation.bulk.records")
+                .tag("format", job.getFormat()).tag("outcome", "error").register(meterRegistry);
+        long startTime = System.currentTimeMillis();
+
+        try {
+            LineReader lines = new LineReader(new InputStreamReader(in, StandardCharsets.UTF_8), settings.getMaxLineLength());
+            ChunkEnricher enricher;
+            if (format == Format.CSV) {
+                enricher = csvEnricher(lines, out, ipColumn, job, records, errors);
+            } else {
+                enricher = chunk -> enrichNdjson(chunk, job, records, errors);
+            }
+            if (enricher != null && !pipeline(job, lines, out, enricher)) {
+                log.info("Bulk job {} cancelled after {} records in {} ms", job.getId(),
+                        job.getRecords().get(), System.currentTimeMillis() - startTime);
+                return;
+            }
+            log.info("Bulk job {} finished: {} records, {} errors in {} ms", job.getId(),
+                    job.getRecords().get(), job.getErrors().get(), System.currentTimeMillis() - startTime);
+        } finally {
+            finish(job);
+        }
+    }
+
+    // Gives the job's slot back once its stream has ended, or for a job whose stream never started
+    public void finish(BulkJob job) {
+        if (activeJobs.remove(job.getId()) != null) {
+            slots.release();
+        }
+    }
+
+    // Returns false if the job was cancelled; chunks still in flight then finish but are not written
+    private boolean pipeline(BulkJob job, LineReader lines, OutputStream out, ChunkEnricher enricher) throws IOException {
+        int chunkSize = Math.max(1, settings.getChunkSize());
+        int maxInFlight = Math.max(1, settings.getMaxInFlightChunks());
+        ArrayDeque<CompletableFuture<byte[]>> inFlight = new ArrayDeque<>(maxInFlight);
+
+        List<String> chunk = new ArrayList<>(chunkSize);
+        String line;
+        while ((line = lines.next()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            chunk.add(line);
+            if (chunk.size() == chunkSize) {
+                if (job.isCancelled()) {
+                    return false;
+                }
+                List<String> submitted = chunk;
+                inFlight.add(CompletableFuture.supplyAsync(() -> enricher.enrich(submitted), executor));
+                chunk = new ArrayList<>(chunkSize);
+
+                // Backpressure: stop reading until the oldest chunk is written
+                while (inFlight.size() >= maxInFlight) {
+                    byte[] oldest = inFlight.poll().join();
+                    if (job.isCancelled()) {
+                        return false;
+                    }
+                    write(out, oldest);
+                }
+                while (!inFlight.isEmpty() && inFlight.peek().isDone()) {
+                    write(out, inFlight.poll().join());
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            List<String> submitted = chunk;
+            inFlight.add(CompletableFuture.supplyAsync(() -> enricher.enrich(submitted), executor));
+        }
+        while (!inFlight.isEmpty()) {
+            byte[] oldest = inFlight.poll().join();
+            if (job.isCancelled()) {
+                return false;
+            }
+            write(out, oldest);
+        }
+        out.flush();
+        return true;
+    }
+
+    private static void write(OutputStream out, byte[] bytes) throws IOException {
+        out.write(bytes);
+        out.flush();
+    }
+
+    private byte[] enrichNdjson(List<String> chunk, BulkJob job, Counter records, Counter errors) {
+        StringBuilder sb = new StringBuilder(chunk.size() * 256);
+        for (String line : chunk) {
+            ObjectNode node;
+            String ip;
+            try {
+                if (line == LineReader.TOO_LONG) {
+                    throw new IllegalArgumentException("Line too long");
+                }
+                JsonNode parsed = objectMapper.readTree(line);
+                if (parsed.isObject()) {
+                    node = (ObjectNode) parsed;
+                    ip = node.path("ip").asText(null);
+                } else {
+                    // A bare JSON string is shorthand for {"ip": ...}
+                    node = objectMapper.createObjectNode();
+                    ip = parsed.asText(null);
+                    node.put("ip", ip);
+                }
+            } catch (Exception e) {
+                node = objectMapper.createObjectNode();
+                node.put("error", "Unparseable record");
+                sb.append(node).append('\n');
+                record(job, records, errors, false);
+                continue;
+            }
+
+            LookupOutcome outcome = lookup(ip);
+            if (outcome.data != null) {
+                node.set("geo", objectMapper.valueToTree(outcome.data));
+            } else {
+                node.put("error", outcome.error);
+            }
+            sb.append(node).append('\n');
+            record(job, records, errors, outcome.data != null);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Reads the header (if any) and returns the per-chunk enricher; the first line is a header
+    // when it is not itself a record, otherwise the IP is taken from the first column
+    private ChunkEnricher csvEnricher(LineReader lines, OutputStream out, String ipColumn,
+                                      BulkJob job, Counter records, Counter errors) throws IOException {
+        String first = lines.next();
+        if (first == null) {
+            return null;
+        }
+
+        int column = 0;
+        List<String> pending = new ArrayList<>(1);
+        String firstField = csvField(first, 0);
+        if (firstField != null && IPAddress.isLiteral(firstField.trim())) {
+            pending.add(first);
+        } else {
+            for (int i = 0; ; i++) {
+                String name = csvField(first, i);
+                if (name == null) {
+                    break;
+                }
+                if (name.trim().equalsIgnoreCase(ipColumn)) {
+                    column = i;
+                    break;
+                }
+            }
+            write(out, (first + "," + CSV_GEO_COLUMNS + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        int ipIndex = column;
+        int width = csvWidth(first);
+        ChunkEnricher enricher = chunk -> enrichCsv(chunk, ipIndex, width, job, records, errors);
+        if (!pending.isEmpty()) {
+            // Headerless input: the first line is data, and the output stays headerless too
+            write(out, enrichCsv(pending, ipIndex, width, job, records, errors));
+        }
+        return enricher;
+    }
+
+    // width is the number of input columns; a line too long to read is written as that many empty
+    // fields, so its geo columns still line up with the header
+    private byte[] enrichCsv(List<String> chunk, int ipIndex, int width, BulkJob job, Counter records, Counter errors) {
+        StringBuilder sb = new StringBuilder(chunk.size() * 192);
+        for (String line : chunk) {
+            boolean tooLong = line == LineReader.TOO_LONG;
+            String ip = tooLong ? null : csvField(line, ipIndex);
+            LookupOutcome outcome = tooLong ? new LookupOutcome(null, "Line too long") : lookup(ip == null ? null : ip.trim());
+            GeoLocationData data = outcome.data;
+
+            if (tooLong) {
+                sb.append(",".repeat(width));
+            } else {
+                sb.append(line).append(',');
+            }
+            if (data != null) {
+                appendCsv(sb, data.getCountryCode()).append(',');
+                appendCsv(sb, data.getCountry()).append(',');
+                appendCsv(sb, data.getRegion()).append(',');
+                appendCsv(sb, data.getCity()).append(',');
+                appendCsv(sb, data.getPostalCode()).append(',');
+                appendCsv(sb, data.getLatitude()).append(',');
+                appendCsv(sb, data.getLongitude()).append(',');
+                appendCsv(sb, data.getTimezone()).append(',');
+                appendCsv(sb, data.getAsn()).append(',');
+                appendCsv(sb, data.getAsnOrganization()).append(',');
+                appendCsv(sb, data.getNetwork()).append(',');
+            } else {
+                sb.append(",,,,,,,,,,,");
+                appendCsv(sb, outcome.error);
+            }
+            sb.append('\n');
+            record(job, records, errors, data != null);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private LookupOutcome lookup(String ip) {
+        if (ip == null || ip.isEmpty()) {
+            return new LookupOutcome(null, "Missing IP address");
+        }
+        try {
+            return new LookupOutcome(geolocationService.getLocationByIP(ip), null);
+        } catch (IllegalArgumentException e) {
+            return new LookupOutcome(null, "Invalid IP address");
+        } catch (IllegalStateException e) {
+            return new LookupOutcome(null, "Service temporarily unavailable");
+        } catch (Exception e) {
+            log.debug("Bulk lookup failed for IP: {}", ip, e);
+            return new LookupOutcome(null, "Lookup failed");
+        }
+    }
+
+    private static void record(BulkJob job, Counter records, Counter errors, boolean success) {
+        job.getRecords().incrementAndGet();
+        if (success) {
+            records.increment();
+        } else {
+            job.getErrors().incrementAndGet();
+            errors.increment();
+        }
+    }
+
+    // Number of fields in a CSV line (RFC 4180 quoting)
+    static int csvWidth(String line) {
+        int fields = 1;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields++;
+            }
+        }
+        return fields;
+    }
+
+    // The index-th field of a CSV line (RFC 4180 quoting), or null if the line has fewer fields
+    static String csvField(String line, int index) {
+        int length = line.length();
+        int i = 0;
+        for (int field = 0; field < index; field++) {
+            boolean quoted = false;
+            while (i < length) {
+                char c = line.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == ',' && !quoted) {
+                    break;
+                }
+                i++;
+            }
+            if (i == length) {
+                return null;
+            }
+            i++; // skip the separator
+        }
+
+        if (i < length && line.charAt(i) == '"') {
+            StringBuilder sb = new StringBuilder();
+            i++;
+            while (i < length) {
+                char c = line.charAt(i++);
+                if (c == '"') {
+                    if (i < length && line.charAt(i) == '"') {
+                        sb.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+        int end = line.indexOf(',', i);
+        return line.substring(i, end < 0 ? length : end);
+    }
+
+    private static StringBuilder appendCsv(StringBuilder sb, Object value) {
+        if (value == null) {
+            return sb;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+            return sb.append(text);
+        }
+        return sb.append('"').append(text.replace("\"", "\"\"")).append('"');
+    }
+
+    @FunctionalInterface
+    private interface ChunkEnricher {
+        byte[] enrich(List<String> chunk);
+    }
+
+    private record LookupOutcome(GeoLocationData data, String error) {
+    }
+
+    // Line reader with a hard cap on line length so one malformed line can't exhaust the heap;
+    // longer lines are skipped and reported as TOO_LONG
+    private static final class LineReader {
+        static final String TOO_LONG = new String("<too long>");
+
+        private final Reader reader;
+        private final int maxLength;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+
+        LineReader(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        String next() throws IOException {
+            line.setLength(0);
+            boolean overflow = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        if (line.length() == 0 && !overflow) {
+                            return null;
+                        }
+                        return overflow ? TOO_LONG : line.toString();
+                    }
+                }
+                char c = buffer[position++];
+                if (c == '\n') {
+                    if (overflow) {
+                        return TOO_LONG;
+                    }
+                    int end = line.length();
+                    if (end > 0 && line.charAt(end - 1) == '\r') {
+                        line.setLength(end - 1);
+                    }
+                    return line.toString();
+                }
+                if (!overflow) {
+                    if (line.length() >= maxLength) {
+                        overflow = true;
+                        line.setLength(0);
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.nyusta.geolocation_api.service;
+
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import com.nyusta.geolocation_api.config.MaxMindProperties;
+import com.nyusta.geolocation_api.event.DatabaseUpdatedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Keeps the hottest network-cache keys on disk (on shutdown and periodically) and re-resolves them in
+// the background once the app reports ready, so a restart doesn't start from a cold cache.
+//
+// Format, big-endian:
+//   u32 magic "GSNP" | u16 version | UTF database fingerprint | u32 count
+//   count x (u64 hi | u64 lo | u8 prefixLength | u8 profile ordinal)
+// A snapshot taken against different database builds is discarded rather than warmed.
+@Slf4j
+@Component
+public class CacheSnapshotService {
+    private static final int MAGIC = 0x47534E50;
+    private static final int VERSION = 1;
+    private static final String DEFAULT_FILENAME = "cache-snapshot.bin";
+
+    private final NetworkPrefixCache networkCache;
+    private final GeolocationService geolocationService;
+    private final MaxMindDatabaseService maxMindService;
+    private final ThreadPoolTaskExecutor warmExecutor;
+    private final GeolocationProperties.Snapshot settings;
+    private final Path snapshotFile;
+    private final AtomicBoolean warmed = new AtomicBoolean();
+
+    public CacheSnapshotService(NetworkPrefixCache networkCache, GeolocationService geolocationService,
+                                MaxMindDatabaseService maxMindService,
+                                GeolocationProperties properties, MaxMindProperties maxMindProperties) {
+        this.networkCache = networkCache;
+        this.geolocationService = geolocationService;
+        this.maxMindService = maxMindService;
+        this.settings = properties.getSnapshot();
+        this.snapshotFile = settings.getPath() != null
+                ? Paths.get(settings.getPath())
+                : Paths.get(maxMindProperties.getDatabasePath(), DEFAULT_FILENAME);
+        // Warming never runs on the caller (the readiness event or the refresh thread) and never
+        // competes with request lookups for the batch pool. One pass at a time; a swap during a pass
+        // queues one more, and anything beyond that would repeat it, so it is dropped.
+        this.warmExecutor = new ThreadPoolTaskExecutor();
+        warmExecutor.setCorePoolSize(1);
+        warmExecutor.setMaxPoolSize(1);
+        warmExecutor.setQueueCapacity(1);
+        warmExecutor.setThreadNamePrefix("cache-warm-");
+        warmExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        warmExecutor.initialize();
+    }
+
+    // Readiness may be announced before the first generation is live (see MaxMindDatabaseService);
+    // warm on the first announcement that has databases behind it
+    @EventListener
+    public void onReadinessChange(AvailabilityChangeEvent<ReadinessState> event) {
+        if (!settings.isEnabled() || event.getState() != ReadinessState.ACCEPTING_TRAFFIC
+                || !maxMindService.isInitialized() || !warmed.compareAndSet(false, true)) {
+            return;
+        }
+        warmExecutor.execute(this::warm);
+    }
+
+    // A swap clears the cache. When the builds didn't change (e.g. the compiled index was added after
+    // startup) the snapshot still applies; otherwise warm() discards it.
+    @EventListener
+    public void onDatabaseUpdated(DatabaseUpdatedEvent event) {
+        if (settings.isEnabled() && warmed.get()) {
+            warmExecutor.execute(this::warm);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${geolocation.snapshot.interval:10m}",
+            initialDelayString = "${geolocation.snapshot.interval:10m}")
+    public void periodicSnapshot() {
+        if (settings.isEnabled()) {
+            save();
+        }
+    }
+
+    @PreDestroy
+    public void onShutdown() {
+        warmExecutor.shutdown();
+        if (settings.isEnabled()) {
+            save();
+        }
+    }
+
+    public void save() {
+        String fingerprint = maxMindService.getDatabaseFingerprint();
+        if (fingerprint == null) {
+            return;
+        }
+        List<NetworkPrefixCache.NetworkKey> keys = networkCache.hottest(settings.getMaxEntries());
+        if (keys.isEmpty()) {
+            // Keep the previous snapshot rather than replacing it with nothing
+            return;
+        }
+        Path partial = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".partial");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partial)))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeUTF(fingerprint);
+                out.writeInt(keys.size());
+                for (NetworkPrefixCache.NetworkKey key : keys) {
+                    out.writeLong(key.hi());
+                    out.writeLong(key.lo());
+                    out.writeByte(key.prefixLength());
+                    out.writeByte(key.profile().ordinal());
+                }
+            }
+            Files.move(partial, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Wrote cache snapshot with {} keys to {}", keys.size(), snapshotFile);
+        } catch (IOException e) {
+            log.warn("Could not write cache snapshot {}", snapshotFile, e);
+        }
+    }
+
+    // Re-resolves every snapshot key through the normal lookup path, which stores it in the cache.
+    // Stops once another generation is served: the snapshot was checked against this one, and the
+    // swap has already queued a pass for the new one.
+    void warm() {
+        long generation = maxMindService.getGeneration();
+        List<NetworkPrefixCache.NetworkKey> keys = load();
+        if (keys.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int warmedKeys = 0;
+        for (NetworkPrefixCache.NetworkKey key : keys) {
+            if (maxMindService.getGeneration() != generation) {
+                log.info("Database generation changed while warming the cache, stopping");
+                break;
+            }
+            try {
+                geolocationService.lookup(key.network().toString(), key.profile());
+                warmedKeys++;
+            } catch (IllegalStateException e) {
+                log.info("Database generation went away while warming the cache, stopping");
+                break;
+            } catch (RuntimeException e) {
+                log.debug("Could not warm cache key {}", key, e);
+            }
+        }
+        log.info("Warmed network cache with {} of {} snapshot keys in {} ms", warmedKeys, keys.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private List<NetworkPrefixCache.NetworkKey> load() {
+        if (!Files.exists(snapshotFile)) {
+            return List.of();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION) {
+                log.info("Ignoring cache snapshot {} in an unknown format", snapshotFile);
+                return List.of();
+            }
+            String fingerprint = in.readUTF();
+            if (!fingerprint.equals(maxMindService.getDatabaseFingerprint())) {
+                log.info("Ignoring cache snapshot taken against other databases ({})", fingerprint);
+                return List.of();
+            }
+            int count = Math.min(in.readInt(), settings.getMaxEntries());
+            LookupProfile[] profiles = LookupProfile.values();
+            List<NetworkPrefixCache.NetworkKey> keys = new ArrayList<>(Math.max(count, 0));
+            for (int i = 0; i < count; i++) {
+                long hi = in.readLong();
+                long lo = in.readLong();
+                int prefixLength = in.readUnsignedByte();
+                int profile = in.readUnsignedByte();
+                if (profile < profiles.length) {
+                    keys.add(new NetworkPrefixCache.NetworkKey(hi, lo, prefixLength, profiles[profile]));
+                }
+            }
+            return keys;
+        } catch (IOException e) {
+            log.warn("Could not read cache snapshot {}", snapshotFile, e);
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.nyusta.geolocation_api.service;
+
+import com.maxmind.db.CHMCache;
+import com.maxmind.db.DatabaseRecord;
+import com.maxmind.db.MaxMindDbConstructor;
+import com.maxmind.db.MaxMindDbParameter;
+import com.maxmind.db.Network;
+import com.maxmind.db.Networks;
+import com.maxmind.db.Reader;
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// IPv4 City + ASN data compiled into a flat, sorted range table when a generation is loaded.
+// Each row is a disjoint address range with an index into deduplicated City and ASN record tables,
+// so a lookup is one binary search over primitive arrays instead of up to three MMDB tree walks.
+// Ranges are stored with the sign bit flipped so unsigned addresses sort as signed ints.
+@Slf4j
+public final class CompiledIpv4Index {
+    private static final int NONE = -1;
+
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] cityIndex;
+    private final int[] asnIndex;
+    private final byte[] prefixLengths;
+
+    private final GeoLocationData[] cityRecords;
+    private final long[] asnNumbers;
+    private final String[] asnOrganizations;
+
+    private CompiledIpv4Index(RangeBuilder ranges, List<GeoLocationData> cityRecords,
+                              List<Long> asnNumbers, List<String> asnOrganizations) {
+        this.starts = ranges.starts.toArray();
+        this.ends = ranges.ends.toArray();
+        this.cityIndex = ranges.cityIndex.toArray();
+        this.asnIndex = ranges.asnIndex.toArray();
+        this.prefixLengths = ranges.prefixLengths();
+        this.cityRecords = cityRecords.toArray(new GeoLocationData[0]);
+        this.asnNumbers = asnNumbers.stream().mapToLong(Long::longValue).toArray();
+        this.asnOrganizations = asnOrganizations.toArray(new String[0]);
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    // Row containing the address, or -1; no allocation
+    public int find(int address) {
+        int key = address ^ Integer.MIN_VALUE;
+        int low = 0;
+        int high = starts.length - 1;
+        int found = NONE;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= key) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found != NONE && ends[found] >= key ? found : NONE;
+    }
+
+    // Shared, deduplicated City fields for a row; callers must copy before modifying
+    public GeoLocationData cityRecord(int row) {
+        return cityRecords[cityIndex[row]];
+    }
+
+    public boolean hasAsn(int row) {
+        return asnIndex[row] != NONE;
+    }
+
+    public long asnNumber(int row) {
+        return asnNumbers[asnIndex[row]];
+    }
+
+    public String asnOrganization(int row) {
+        return asnOrganizations[asnIndex[row]];
+    }
+
+    public int prefixLength(int row) {
+        return prefixLengths[row];
+    }
+
+    public static CompiledIpv4Index build(File cityDatabase, File asnDatabase) throws IOException {
+        long startTime = System.nanoTime();
+
+        List<GeoLocationData> cityRecords = new ArrayList<>();
+        Intervals city = new Intervals();
+        try (Reader reader = new Reader(cityDatabase, new CHMCache(65536))) {
+            // Deduplicated by content only: the record cache returns shared instances while it has
+            // room, but holding on to them (say in an identity map) would retain every record
+            Map<GeoLocationData, Integer> byContent = new HashMap<>();
+            Networks<CityRecord> networks = reader.networks(CityRecord.class);
+            while (networks.hasNext()) {
+                DatabaseRecord<CityRecord> record = networks.next();
+                CityRecord data = record.getData();
+                if (data == null || !city.add(record.getNetwork())) {
+                    continue;
+                }
+                int index = byContent.computeIfAbsent(data.toTemplate(), key -> {
+                    cityRecords.add(key);
+                    return cityRecords.size() - 1;
+                });
+                city.values.add(index);
+            }
+        }
+
+        List<Long> asnNumbers = new ArrayList<>();
+        List<String> asnOrganizations = new ArrayList<>();
+        Intervals asn = new Intervals();
+        if (asnDatabase != null) {
+            try (Reader reader = new Reader(asnDatabase, new CHMCache(65536))) {
+                Map<String, Integer> byKey = new HashMap<>();
+                Networks<AsnRecord> networks = reader.networks(AsnRecord.class);
+                while (networks.hasNext()) {
+                    DatabaseRecord<AsnRecord> record = networks.next();
+                    AsnRecord data = record.getData();
+                    if (data == null || data.number == null || !asn.add(record.getNetwork())) {
+                        continue;
+                    }
+                    Integer index = byKey.computeIfAbsent(data.number + "|" + data.organization, key -> {
+                        asnNumbers.add(data.number);
+                        asnOrganizations.add(data.organization);
+                        return asnNumbers.size() - 1;
+                    });
+                    asn.values.add(index);
+                }
+            }
+        }
+
+        city.sort();
+        asn.sort();
+        RangeBuilder ranges = merge(city, asn);
+        CompiledIpv4Index index = new CompiledIpv4Index(ranges, cityRecords, asnNumbers, asnOrganizations);
+
+        log.info("Compiled IPv4 index: {} ranges, {} city records, {} ASN records in {} ms",
+                index.size(), cityRecords.size(), asnNumbers.size(), (System.nanoTime() - startTime) / 1_000_000);
+        return index;
+    }
+
+    // Splits every City range by the ASN ranges overlapping it. The intersection of two CIDR blocks
+    // is the longer one, so each piece also knows the network its answer is valid for.
+    private static RangeBuilder merge(Intervals city, Intervals asn) {
+        RangeBuilder out = new RangeBuilder();
+        int j = 0;
+        for (int i = 0; i < city.size(); i++) {
+            long position = city.start(i);
+            long cityEnd = city.end(i);
+            while (position <= cityEnd) {
+                while (j < asn.size() && asn.end(j) < position) {
+                    j++;
+                }
+                long pieceEnd;
+                if (j < asn.size() && asn.start(j) <= position) {
+                    pieceEnd = Math.min(cityEnd, asn.end(j));
+                    out.add(position, pieceEnd, city.values.get(i), asn.values.get(j),
+                            Math.max(city.prefixes.get(i), asn.prefixes.get(j)));
+                } else {
+                    long nextAsn = j < asn.size() ? asn.start(j) : Long.MAX_VALUE;
+                    pieceEnd = Math.min(cityEnd, nextAsn - 1);
+                    out.add(position, pieceEnd, city.values.get(i), NONE, city.prefixes.get(i));
+                }
+                position = pieceEnd + 1;
+            }
+        }
+        return out;
+    }
+
+    // IPv4 networks as unsigned ranges; IPv4 data in an IPv6 tree comes back under ::/96
+    private static final class Intervals {
+        final IntList starts = new IntList();
+        final IntList prefixes = new IntList();
+        final IntList values = new IntList();
+
+        boolean add(Network network) {
+            byte[] address = network.getNetworkAddress().getAddress();
+            int prefixLength = network.getPrefixLength();
+            if (address.length == 16) {
+                for (int b = 0; b < 12; b++) {
+                    if (address[b] != 0) {
+                        return false;
+                    }
+                }
+                if (prefixLength < 96) {
+                    return false;
+                }
+                address = Arrays.copyOfRange(address, 12, 16);
+                prefixLength -= 96;
+            }
+            starts.add(((address[0] & 0xFF) << 24) | ((address[1] & 0xFF) << 16)
+                    | ((address[2] & 0xFF) << 8) | (address[3] & 0xFF));
+            prefixes.add(prefixLength);
+            return true;
+        }
+
+        int size() {
+            return starts.size();
+        }
+
+        long start(int i) {
+            return starts.get(i) & 0xFFFFFFFFL;
+        }
+
+        long end(int i) {
+            return start(i) + (1L << (32 - prefixes.get(i))) - 1;
+        }
+
+        // Tree order is already address order; only sort if the iterator ever says otherwise
+        void sort() {
+            for (int i = 1; i < size(); i++) {
+                if (start(i) < start(i - 1)) {
+                    sortByStart();
+                    return;
+                }
+            }
+        }
+
+        private void sortByStart() {
+            Integer[] order = new Integer[size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(start(a), start(b)));
+            IntList s = new IntList();
+            IntList p = new IntList();
+            IntList v = new IntList();
+            for (int i : order) {
+                s.add(starts.get(i));
+                p.add(prefixes.get(i));
+                v.add(values.get(i));
+            }
+            starts.replace(s);
+            prefixes.replace(p);
+            values.replace(v);
+        }
+    }
+
+    private static final class RangeBuilder {
+        final IntList starts = new IntList();
+        final IntList ends = new IntList();
+        final IntList cityIndex = new IntList();
+        final IntList asnIndex = new IntList();
+        final IntList prefixes = new IntList();
+
+        void add(long start, long end, int city, int asn, int prefixLength) {
+            starts.add((int) start ^ Integer.MIN_VALUE);
+            ends.add((int) end ^ Integer.MIN_VALUE);
+            cityIndex.add(city);
+            asnIndex.add(asn);
+            prefixes.add(prefixLength);
+        }
+
+        byte[] prefixLengths() {
+            byte[] out = new byte[prefixes.size()];
+            for (int i = 0; i < out.length; i++) {
+                out[i] = (byte) prefixes.get(i);
+            }
+            return out;
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void replace(IntList other) {
+            values = other.values;
+            size = other.size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    // Decoding targets for the MMDB records; only the fields the API returns
+
+    public static class CityRecord {
+        private final Named country;
+        private final Named continent;
+        private final Named city;
+        private final ArrayList<Named> subdivisions;
+        private final LocationRecord location;
+        private final PostalRecord postal;
+
+        @MaxMindDbConstructor
+        public CityRecord(@MaxMindDbParameter(name = "country") Named country,
+                          @MaxMindDbParameter(name = "continent") Named continent,
+                          @MaxMindDbParameter(name = "city") Named city,
+                          @MaxMindDbParameter(name = "subdivisions") ArrayList<Named> subdivisions,
+                          @MaxMindDbParameter(name = "location") LocationRecord location,
+                          @MaxMindDbParameter(name = "postal") PostalRecord postal) {
+            this.country = country;
+            this.continent = continent;
+            this.city = city;
+            this.subdivisions = subdivisions;
+            this.location = location;
+            this.postal = postal;
+        }
+
+        GeoLocationData toTemplate() {
+            GeoLocationData.GeoLocationDataBuilder builder = GeoLocationData.builder();
+            if (country != null) {
+                builder.country(country.name()).countryCode(country.isoCode);
+            }
+            if (continent != null) {
+                builder.continent(continent.code);
+            }
+            if (subdivisions != null && !subdivisions.isEmpty()) {
+                // Same as CityResponse.getMostSpecificSubdivision()
+                Named subdivision = subdivisions.get(subdivisions.size() - 1);
+                builder.region(subdivision.name()).regionCode(subdivision.isoCode);
+            }
+            if (city != null) {
+                builder.city(city.name());
+            }
+            if (postal != null) {
+                builder.postalCode(postal.code);
+            }
+            if (location != null) {
+                builder.latitude(location.latitude)
+                        .longitude(location.longitude)
+                        .timezone(location.timeZone)
+                        .accuracyRadius(location.accuracyRadius);
+            }
+            return builder.build();
+        }
+    }
+
+    public static class Named {
+        private final String isoCode;
+        private final String code;
+        private final Map<String, String> names;
+
+        @MaxMindDbConstructor
+        public Named(@MaxMindDbParameter(name = "iso_code") String isoCode,
+                     @MaxMindDbParameter(name = "code") String code,
+                     @MaxMindDbParameter(name = "names") Map<String, String> names) {
+            this.isoCode = isoCode;
+            this.code = code;
+            this.names = names;
+        }
+
+        String name() {
+            return names != null ? names.get("en") : null;
+        }
+    }
+
+    public static class LocationRecord {
+        private final Double latitude;
+        private final Double longitude;
+        private final String timeZone;
+        private final Integer accuracyRadius;
+
+        @MaxMindDbConstructor
+        public LocationRecord(@MaxMindDbParameter(name = "latitude") Double latitude,
+                              @MaxMindDbParameter(name = "longitude") Double longitude,
+                              @MaxMindDbParameter(name = "time_zone") String timeZone,
+                              @MaxMindDbParameter(name = "accuracy_radius") Integer accuracyRadius) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.timeZone = timeZone;
+            this.accuracyRadius = accuracyRadius;
+        }
+    }
+
+    public static class PostalRecord {
+        private final String code;
+
+        @MaxMindDbConstructor
+        public PostalRecord(@MaxMindDbParameter(name = "code") String code) {
+            this.code = code;
+        }
+    }
+
+    public static class AsnRecord {
+        private final Long number;
+        private final String organization;
+
+        @MaxMindDbConstructor
+        public AsnRecord(@MaxMindDbParameter(name = "autonomous_system_number") Long number,
+                         @MaxMindDbParameter(name = "autonomous_system_organization") String organization) {
+            this.number = number;
+            this.organization = organization;
+        }
+    }
+}
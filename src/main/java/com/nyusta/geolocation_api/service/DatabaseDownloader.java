@@ -0,0 +1,217 @@
+package com.nyusta.geolocation_api.service;
+
+import com.nyusta.geolocation_api.config.MaxMindProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Properties;
+
+// Fetches one MaxMind edition in a single streaming pass: HTTP body -> sha256 digest -> gunzip ->
+// untar -> <file>.partial, then verifies the archive checksum and atomically renames over the live
+// file. ETag / Last-Modified / sha256 of the installed copy are kept in <file>.download so unchanged
+// editions are answered by a 304 (or a checksum match) without transferring the archive.
+@Slf4j
+@Component
+public class DatabaseDownloader {
+    private static final String META_SUFFIX = ".download";
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    public enum Outcome {
+        UPDATED,
+        NOT_MODIFIED
+    }
+
+    private final MaxMindProperties properties;
+    private final CloseableHttpClient httpClient;
+
+    public DatabaseDownloader(MaxMindProperties properties) {
+        this.properties = properties;
+        MaxMindProperties.Download settings = properties.getDownload();
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) settings.getConnectTimeout().toMillis())
+                .setConnectionRequestTimeout((int) settings.getConnectTimeout().toMillis())
+                .setSocketTimeout((int) settings.getReadTimeout().toMillis())
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setDefaultRequestConfig(requestConfig)
+                .setMaxConnPerRoute(Math.max(2, settings.getConcurrency()))
+                .setMaxConnTotal(Math.max(2, settings.getConcurrency()) * 2)
+                .useSystemProperties()
+                .build();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    public Outcome download(String dbType, Path target) throws IOException {
+        String url = properties.getDownloadUrls() != null ? properties.getDownloadUrls().get(dbType) : null;
+        if (url == null) {
+            throw new IllegalArgumentException("No download URL configured for database type: " + dbType);
+        }
+        boolean installed = Files.exists(target);
+        Path metaFile = target.resolveSibling(target.getFileName() + META_SUFFIX);
+        Properties meta = installed ? readMeta(metaFile) : new Properties();
+
+        String expectedSha256 = null;
+        if (properties.getDownload().isVerifyChecksum()) {
+            expectedSha256 = fetchChecksum(dbType, properties.getChecksumUrl(dbType));
+            if (installed && expectedSha256.equals(meta.getProperty("sha256"))) {
+                log.debug("{} database checksum unchanged, skipping download", dbType);
+                return Outcome.NOT_MODIFIED;
+            }
+        }
+
+        HttpGet request = new HttpGet(url);
+        if (installed) {
+            String etag = meta.getProperty("etag");
+            String lastModified = meta.getProperty("last-modified");
+            if (etag != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+            }
+            if (lastModified != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+        }
+
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_NOT_MODIFIED) {
+                EntityUtils.consume(response.getEntity());
+                log.debug("{} database not modified on server", dbType);
+                return Outcome.NOT_MODIFIED;
+            }
+            if (status != HttpStatus.SC_OK || response.getEntity() == null) {
+                EntityUtils.consume(response.getEntity());
+                throw new IOException("Download of " + dbType + " database failed: HTTP " + status);
+            }
+
+            Path partial = target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+            try (InputStream body = response.getEntity().getContent()) {
+                String actualSha256 = extractMmdb(body, partial);
+                if (expectedSha256 != null && !expectedSha256.equals(actualSha256)) {
+                    throw new IOException("Checksum mismatch for " + dbType + " database: expected "
+                            + expectedSha256 + ", got " + actualSha256);
+                }
+                // Readers of the old file keep their mapping of the old inode
+                Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                Properties updated = new Properties();
+                setIfPresent(updated, "etag", response.getFirstHeader(HttpHeaders.ETAG));
+                setIfPresent(updated, "last-modified", response.getFirstHeader(HttpHeaders.LAST_MODIFIED));
+                updated.setProperty("sha256", actualSha256);
+                writeMeta(metaFile, updated);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        }
+        log.info("Downloaded and verified {} database", dbType);
+        return Outcome.UPDATED;
+    }
+
+    // Writes the archive's .mmdb entry to partial and returns the sha256 of the whole archive
+    private static String extractMmdb(InputStream body, Path partial) throws IOException {
+        DigestInputStream digestStream = new DigestInputStream(body, sha256());
+        boolean extracted = false;
+        // Not closed here: closing would close the body before the digest has seen all of it
+        TarArchiveInputStream tar = new TarArchiveInputStream(new GzipCompressorInputStream(digestStream));
+        TarArchiveEntry entry;
+        while ((entry = tar.getNextTarEntry()) != null) {
+            if (entry.isFile() && entry.getName().endsWith(".mmdb")) {
+                Files.copy(tar, partial, StandardCopyOption.REPLACE_EXISTING);
+                extracted = true;
+                break;
+            }
+        }
+        if (!extracted) {
+            throw new IOException("No .mmdb file found in archive");
+        }
+        // The checksum covers the whole archive, including entries after the database
+        digestStream.transferTo(OutputStream.nullOutputStream());
+        return HexFormat.of().formatHex(digestStream.getMessageDigest().digest());
+    }
+
+    // MaxMind serves "<sha256>  <archive name>". Messages name the database type only: the URL
+    // carries the license key and these end up in the error log
+    private String fetchChecksum(String dbType, String url) throws IOException {
+        if (url == null) {
+            throw new IOException("No checksum URL configured for " + dbType + " database");
+        }
+        try (CloseableHttpResponse response = httpClient.execute(new HttpGet(url))) {
+            int status = response.getStatusLine().getStatusCode();
+            String body = response.getEntity() != null
+                    ? EntityUtils.toString(response.getEntity(), StandardCharsets.US_ASCII) : "";
+            if (status != HttpStatus.SC_OK) {
+                throw new IOException("Checksum download for " + dbType + " database failed: HTTP " + status);
+            }
+            String checksum = body.trim().split("\\s+", 2)[0].toLowerCase(Locale.ROOT);
+            if (!checksum.matches("[0-9a-f]{64}")) {
+                throw new IOException("Malformed sha256 checksum for " + dbType + " database");
+            }
+            return checksum;
+        }
+    }
+
+    private static Properties readMeta(Path metaFile) {
+        Properties meta = new Properties();
+        if (Files.exists(metaFile)) {
+            try (Reader reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+                meta.load(reader);
+            } catch (IOException e) {
+                // Only costs an unconditional download
+                log.warn("Could not read download metadata {}", metaFile, e);
+            }
+        }
+        return meta;
+    }
+
+    private static void writeMeta(Path metaFile, Properties meta) throws IOException {
+        Path partial = metaFile.resolveSibling(metaFile.getFileName() + PARTIAL_SUFFIX);
+        try (Writer writer = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+            meta.store(writer, null);
+        }
+        Files.move(partial, metaFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void setIfPresent(Properties meta, String key, Header header) {
+        if (header != null && header.getValue() != null) {
+            meta.setProperty(key, header.getValue());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
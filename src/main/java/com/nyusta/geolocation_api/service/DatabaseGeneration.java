@@ -0,0 +1,175 @@
+package com.nyusta.geolocation_api.service;
+
+import com.maxmind.db.DatabaseRecord;
+import com.maxmind.db.Reader;
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.exception.GeoIp2Exception;
+import com.maxmind.geoip2.model.AsnResponse;
+import com.maxmind.geoip2.model.CityResponse;
+import com.maxmind.geoip2.model.CountryResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// An immutable set of database readers loaded together. Lookups hold a reference for their duration
+// (try-with-resources on MaxMindDatabaseService.acquire()); the readers are closed only after the
+// generation has been replaced and the last in-flight lookup has released it.
+@Slf4j
+public final class DatabaseGeneration implements AutoCloseable {
+    private final long id;
+    private final Instant loadedAt;
+    private final Map<String, DatabaseReader> readers;
+    private final Map<String, Reader> networkReaders; // raw readers, for sizing misses and walking networks
+    private final Map<String, Long> sizes;
+    private final CompiledIpv4Index compiledIndex; // null unless the compiled engine is enabled
+
+    // Starts at 1 for the service's own reference, dropped by retire()
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final AtomicBoolean retired = new AtomicBoolean();
+
+    DatabaseGeneration(long id, Map<String, DatabaseReader> readers, Map<String, Reader> networkReaders,
+                       Map<String, Long> sizes, CompiledIpv4Index compiledIndex) {
+        this.id = id;
+        this.loadedAt = Instant.now();
+        this.readers = Map.copyOf(readers);
+        this.networkReaders = Map.copyOf(networkReaders);
+        this.sizes = Map.copyOf(sizes);
+        this.compiledIndex = compiledIndex;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    public CompiledIpv4Index getCompiledIndex() {
+        return compiledIndex;
+    }
+
+    public boolean isEmpty() {
+        return readers.isEmpty();
+    }
+
+    public long getSize(String dbType) {
+        return sizes.getOrDefault(dbType, 0L);
+    }
+
+    // Build time recorded in the database metadata, or null if the database is not loaded
+    public Instant getBuildDate(String dbType) {
+        DatabaseReader reader = readers.get(dbType);
+        return reader != null ? reader.getMetadata().getBuildDate().toInstant() : null;
+    }
+
+    public boolean hasDatabase(String dbType) {
+        return readers.containsKey(dbType);
+    }
+
+    public CountryResponse getCountryResponse(InetAddress ipAddress) throws IOException, GeoIp2Exception {
+        return reader("country", "Country").country(ipAddress);
+    }
+
+    public CityResponse getCityResponse(InetAddress ipAddress) throws IOException, GeoIp2Exception {
+        return reader("city", "City").city(ipAddress);
+    }
+
+    public AsnResponse getAsnResponse(InetAddress ipAddress) throws IOException, GeoIp2Exception {
+        return reader("asn", "ASN").asn(ipAddress);
+    }
+
+    // Non-throwing variants for the lookup path: a miss is an empty Optional, not an
+    // AddressNotFoundException with a stack trace
+    public Optional<CountryResponse> tryCountry(InetAddress ipAddress) throws IOException, GeoIp2Exception {
+        DatabaseReader reader = readers.get("country");
+        return reader != null ? reader.tryCountry(ipAddress) : Optional.empty();
+    }
+
+    public Optional<CityResponse> tryCity(InetAddress ipAddress) throws IOException, GeoIp2Exception {
+        DatabaseReader reader = readers.get("city");
+        return reader != null ? reader.tryCity(ipAddress) : Optional.empty();
+    }
+
+    public Optional<AsnResponse> tryAsn(InetAddress ipAddress) throws IOException, GeoIp2Exception {
+        DatabaseReader reader = readers.get("asn");
+        return reader != null ? reader.tryAsn(ipAddress) : Optional.empty();
+    }
+
+    // Prefix length (in the address's family) of the block around the address that the database has
+    // no data for; the whole block can be cached as a miss. Falls back to the full address length
+    // when the database is not loaded.
+    @SuppressWarnings("rawtypes")
+    public int missPrefixLength(String dbType, InetAddress ipAddress) throws IOException {
+        Reader reader = networkReaders.get(dbType);
+        if (reader == null) {
+            return ipAddress.getAddress().length * 8;
+        }
+        DatabaseRecord<Map> record = reader.getRecord(ipAddress, Map.class);
+        return record.getNetwork().getPrefixLength();
+    }
+
+    // Raw reader for walking a database's networks, or null if it is not loaded; callers must hold
+    // a reference on the generation while they use it
+    Reader networkReader(String dbType) {
+        return networkReaders.get(dbType);
+    }
+
+    private DatabaseReader reader(String dbType, String displayName) {
+        DatabaseReader reader = readers.get(dbType);
+        if (reader == null) {
+            throw new IllegalStateException(displayName + " database not loaded");
+        }
+        return reader;
+    }
+
+    // Fails once the generation has been fully released, so a caller racing a swap retries on the new one
+    boolean retain() {
+        while (true) {
+            int current = references.get();
+            if (current == 0) {
+                return false;
+            }
+            if (references.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (references.decrementAndGet() == 0) {
+            closeReaders();
+        }
+    }
+
+    void retire() {
+        if (retired.compareAndSet(false, true)) {
+            close();
+        }
+    }
+
+    private void closeReaders() {
+        log.info("Closing database generation {}", id);
+        readers.values().forEach(reader -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.warn("Error closing database reader", e);
+            }
+        });
+        networkReaders.values().forEach(reader -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.warn("Error closing database reader", e);
+            }
+        });
+    }
+}
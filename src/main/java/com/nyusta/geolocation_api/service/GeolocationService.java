@@ -1,5 +1,6 @@
 package com.nyusta.geolocation_api.service;
 
+import com.maxmind.db.Network;
 import com.maxmind.geoip2.model.AsnResponse;
 import com.maxmind.geoip2.model.CityResponse;
 import com.maxmind.geoip2.model.CountryResponse;
@@ -10,15 +11,17 @@ import com.maxmind.geoip2.record.Location;
 import com.maxmind.geoip2.record.Postal;
 import com.maxmind.geoip2.record.Subdivision;
 import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.utils.IPAddress;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
 import org.springframework.stereotype.Service;
 
 import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
 
 @Slf4j
@@ -26,6 +29,12 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class GeolocationService {
     private final MaxMindDatabaseService maxMindService;
+    private final NetworkPrefixCache networkCache;
+    private final ReservedRanges reservedRanges;
+    private final LookupMetrics metrics;
+    private final LookupCoalescer coalescer;
+    private final ApplicationAvailability availability;
+    private final TrafficAnalytics analytics;
 
     // EU country codes for GDPR compliance
     private static final Set<String> EU_COUNTRIES = new HashSet<>(Arrays.asList(
@@ -34,83 +43,245 @@ public class GeolocationService {
             "MC", "MT", "NL", "NO", "PL", "PT", "RO", "SE", "SI", "SK", "SM", "VA"
     ));
 
-    @Cacheable(value = "geolocations", key = "#ip")
     public GeoLocationData getLocationByIP(String ip) {
+        return getLocationByIP(ip, LookupProfile.FULL);
+    }
+
+    // Only the databases the profile needs are queried; results are cached per profile
+    public GeoLocationData getLocationByIP(String ip, LookupProfile profile) {
+        GeoLocationData result = lookup(ip, profile);
+        analytics.record(ip, result);
+        return result;
+    }
+
+    // The same lookup without counting towards traffic analytics, for internal callers such as
+    // cache warming
+    GeoLocationData lookup(String ip, LookupProfile profile) {
+        long lookupStart = System.nanoTime();
+
+        // Literal IPv4/IPv6 only; a hostname must never turn into a DNS query on the request thread
+        IPAddress address = IPAddress.parse(ip);
+        long stageEnd = System.nanoTime();
+        metrics.recordStage(LookupMetrics.Stage.PARSE, stageEnd - lookupStart);
+        if (address == null) {
+            log.warn("Invalid IP address: {}", ip);
+            metrics.error(LookupMetrics.Error.INVALID);
+            throw new IllegalArgumentException("Invalid IP address: " + ip);
+        }
+
+        // Reserved and internal ranges are answered before touching the cache or the databases
+        long stageStart = stageEnd;
+        ReservedRanges.Match reserved = reservedRanges.match(address);
+        stageEnd = System.nanoTime();
+        metrics.recordStage(LookupMetrics.Stage.RESERVED, stageEnd - stageStart);
+        if (reserved != null) {
+            metrics.privateIp(reserved.tag());
+            GeoLocationData result = GeoLocationData.builder()
+                    .ip(ip)
+                    .isPrivateIP(true)
+                    .reservedRange(reserved.tag())
+                    .network(address.toCidr(reserved.prefixLength()))
+                    .source("MaxMind-GeoLite2")
+                    .timestamp(System.currentTimeMillis())
+                    .country("Unknown")
+                    .countryCode("XX")
+                    .city("Private Network")
+                    .build();
+            metrics.recordLookup(LookupMetrics.Source.RESERVED, System.nanoTime() - lookupStart);
+            return profile.trim(result);
+        }
+
         if (!maxMindService.isInitialized()) {
+            metrics.error(LookupMetrics.Error.UNAVAILABLE);
             throw new IllegalStateException("MaxMind database service not initialized");
         }
 
         try {
-            InetAddress ipAddress = InetAddress.getByName(ip);
+            CompiledIpv4Index index = address.isIPv4() ? maxMindService.getCompiledIndex() : null;
+            if (index != null) {
+                stageStart = System.nanoTime();
+                GeoLocationData compiled = lookupCompiled(index, ip, address);
+                stageEnd = System.nanoTime();
+                metrics.recordStage(LookupMetrics.Stage.COMPILED, stageEnd - stageStart);
+                if (compiled != null) {
+                    metrics.recordLookup(LookupMetrics.Source.COMPILED, stageEnd - lookupStart);
+                    return profile.trim(compiled);
+                }
+                // Not in the City data; the MMDB path below still tries the Country database
+            }
 
-            // Check if it's a private IP
-            boolean isPrivate = isPrivateIP(ipAddress);
+            stageStart = System.nanoTime();
+            GeoLocationData cached = networkCache.get(address, profile);
+            stageEnd = System.nanoTime();
+            metrics.recordStage(LookupMetrics.Stage.CACHE, stageEnd - stageStart);
+            if (cached != null) {
+                GeoLocationData result = cached.toBuilder().ip(ip).build();
+                metrics.recordLookup(LookupMetrics.Source.CACHE, System.nanoTime() - lookupStart);
+                return result;
+            }
 
-            GeoLocationData.GeoLocationDataBuilder builder = GeoLocationData.builder()
-                    .ip(ip)
-                    .isPrivateIP(isPrivate)
-                    .source("MaxMind-GeoLite2")
-                    .timestamp(System.currentTimeMillis());
-
-            if (isPrivate) {
-                // For private IPs, return basic info
-                return builder
-                        .country("Unknown")
-                        .countryCode("XX")
-                        .city("Private Network")
-                        .build();
+            // Concurrent misses in the same block share one database read
+            long startTime = stageEnd;
+            LookupCoalescer.Loaded loaded = coalescer.load(address, profile,
+                    () -> lookupDatabases(ip, address, profile, startTime));
+            if (loaded.shared()) {
+                metrics.recordLookup(LookupMetrics.Source.COALESCED, System.nanoTime() - lookupStart);
+                return loaded.data().toBuilder().ip(ip).build();
             }
+            metrics.recordLookup(LookupMetrics.Source.DATABASE, System.nanoTime() - lookupStart);
+            return loaded.data();
 
-            // Try to get detailed city information first
-            try {
-                CityResponse cityResponse = maxMindService.getCityResponse(ipAddress);
-                populateFromCityResponse(builder, cityResponse);
-            } catch (Exception e) {
-                log.debug("City lookup failed, trying country lookup for IP: {}", ip);
-
-                // Fallback to country-only lookup
-                try {
-                    CountryResponse countryResponse = maxMindService.getCountryResponse(ipAddress);
-                    populateFromCountryResponse(builder, countryResponse);
-                } catch (Exception countryEx) {
-                    log.warn("Country lookup also failed for IP: {}", ip, countryEx);
-                    return builder
-                            .country("Unknown")
-                            .countryCode("XX")
-                            .build();
+        } catch (IllegalStateException e) {
+            metrics.error(LookupMetrics.Error.UNAVAILABLE);
+            throw e;
+        } catch (Exception e) {
+            log.error("Error looking up geolocation for IP: {}", ip, e);
+            metrics.error(LookupMetrics.Error.FAILURE);
+            throw new RuntimeException("Geolocation lookup failed", e);
+        }
+    }
+
+    // Reads the databases the profile needs and caches the result under its network
+    private GeoLocationData lookupDatabases(String ip, IPAddress address, LookupProfile profile, long startTime)
+            throws Exception {
+        GeoLocationData.GeoLocationDataBuilder builder = GeoLocationData.builder()
+                .ip(ip)
+                .source("MaxMind-GeoLite2")
+                .timestamp(System.currentTimeMillis());
+
+        // Every lookup below reads from the same generation, even if a swap happens meanwhile
+        try (DatabaseGeneration databases = maxMindService.acquire()) {
+            InetAddress ipAddress = address.toInetAddress();
+
+            // Cache block for this result: the intersection of every network (or empty block) the
+            // answer came from. All of them contain the address, so the longest prefix wins.
+            int addressBits = address.bitLength();
+            int prefixLength = 0;
+            boolean located = true;
+            long stageStart;
+
+            // Misses come back as empty Optionals with the size of the empty block, so an unknown
+            // network is cached like any other result and repeated misses cost one cache probe
+            if (profile.usesCity()) {
+                stageStart = System.nanoTime();
+                Optional<CityResponse> cityResponse = databases.tryCity(ipAddress);
+                if (cityResponse.isPresent()) {
+                    populateFromCityResponse(builder, cityResponse.get());
+                    prefixLength = networkPrefix(cityResponse.get().getTraits().getNetwork(), addressBits);
+                    metrics.recordStage(LookupMetrics.Stage.CITY, System.nanoTime() - stageStart);
+                } else {
+                    // The fallback answer only holds where City has no data either
+                    prefixLength = clampPrefix(databases.missPrefixLength("city", ipAddress), addressBits);
+                    metrics.recordStage(LookupMetrics.Stage.CITY, System.nanoTime() - stageStart);
+                    metrics.notFound(LookupMetrics.Miss.CITY);
+                    located = false;
                 }
             }
 
-            // Try to get ASN information
-            try {
-                AsnResponse asnResponse = maxMindService.getAsnResponse(ipAddress);
-                if (asnResponse.getAutonomousSystemNumber() != null) {
-                    builder.asn(asnResponse.getAutonomousSystemNumber().longValue());
+            // Country-only profiles, or the fallback for a City miss
+            if (profile.usesCountry() || !located) {
+                stageStart = System.nanoTime();
+                Optional<CountryResponse> countryResponse = databases.tryCountry(ipAddress);
+                if (countryResponse.isPresent()) {
+                    populateFromCountryResponse(builder, countryResponse.get());
+                    prefixLength = Math.max(prefixLength,
+                            networkPrefix(countryResponse.get().getTraits().getNetwork(), addressBits));
+                    if (!located) {
+                        metrics.countryFallback();
+                    }
+                    located = true;
+                } else {
+                    prefixLength = Math.max(prefixLength,
+                            clampPrefix(databases.missPrefixLength("country", ipAddress), addressBits));
+                    metrics.notFound(LookupMetrics.Miss.COUNTRY);
+                    builder.country("Unknown")
+                            .countryCode("XX");
+                    located = false;
                 }
-                if (asnResponse.getAutonomousSystemOrganization() != null) {
-                    builder.asnOrganization(asnResponse.getAutonomousSystemOrganization());
-                    builder.isp(asnResponse.getAutonomousSystemOrganization());
+                metrics.recordStage(LookupMetrics.Stage.COUNTRY, System.nanoTime() - stageStart);
+            }
+
+            if (profile.usesAsn() && located) {
+                // Try to get ASN information
+                stageStart = System.nanoTime();
+                Optional<AsnResponse> asnResponse = databases.tryAsn(ipAddress);
+                if (asnResponse.isPresent()) {
+                    AsnResponse asn = asnResponse.get();
+                    if (asn.getAutonomousSystemNumber() != null) {
+                        builder.asn(asn.getAutonomousSystemNumber().longValue());
+                    }
+                    if (asn.getAutonomousSystemOrganization() != null) {
+                        builder.asnOrganization(asn.getAutonomousSystemOrganization());
+                        builder.isp(asn.getAutonomousSystemOrganization());
+                    }
+                    prefixLength = Math.max(prefixLength, networkPrefix(asn.getNetwork(), addressBits));
+                } else {
+                    prefixLength = Math.max(prefixLength,
+                            clampPrefix(databases.missPrefixLength("asn", ipAddress), addressBits));
+                    metrics.notFound(LookupMetrics.Miss.ASN);
                 }
-            } catch (Exception e) {
-                log.debug("ASN lookup failed for IP: {}", ip);
+                metrics.recordStage(LookupMetrics.Stage.ASN, System.nanoTime() - stageStart);
             }
 
-            GeoLocationData result = builder.build();
+            GeoLocationData result = builder
+                    .network(address.toCidr(prefixLength))
+                    .build();
 
             // Set EU flag for compliance
             if (result.getCountryCode() != null) {
                 result.setEuCountry(EU_COUNTRIES.contains(result.getCountryCode()));
             }
 
+            long endTime = System.nanoTime();
+            networkCache.put(address, profile, prefixLength, result, databases.getId(), endTime - startTime);
             return result;
+        }
+    }
 
-        } catch (UnknownHostException e) {
-            log.warn("Invalid IP address: {}", ip);
-            throw new IllegalArgumentException("Invalid IP address: " + ip, e);
-        } catch (Exception e) {
-            log.error("Error looking up geolocation for IP: {}", ip, e);
-            throw new RuntimeException("Geolocation lookup failed", e);
+    private GeoLocationData lookupCompiled(CompiledIpv4Index index, String ip, IPAddress address) {
+        int row = index.find(address.toIPv4Int());
+        if (row < 0) {
+            return null;
         }
+
+        GeoLocationData.GeoLocationDataBuilder builder = index.cityRecord(row).toBuilder()
+                .ip(ip)
+                .source("MaxMind-GeoLite2")
+                .timestamp(System.currentTimeMillis())
+                .network(address.toCidr(index.prefixLength(row)));
+        if (index.hasAsn(row)) {
+            builder.asn(index.asnNumber(row));
+            builder.asnOrganization(index.asnOrganization(row));
+            builder.isp(index.asnOrganization(row));
+        }
+
+        GeoLocationData result = builder.build();
+        if (result.getCountryCode() != null) {
+            result.setEuCountry(EU_COUNTRIES.contains(result.getCountryCode()));
+        }
+        return result;
+    }
+
+    // Cache-only lookup used by the batch endpoint to split hits from misses
+    public GeoLocationData getCachedLocationByIP(String ip) {
+        IPAddress address = IPAddress.parse(ip);
+        if (address == null) {
+            return null;
+        }
+        GeoLocationData cached = networkCache.get(address, LookupProfile.FULL);
+        if (cached == null) {
+            return null;
+        }
+        analytics.record(ip, cached);
+        return cached.toBuilder().ip(ip).build();
+    }
+
+    private static int networkPrefix(Network network, int addressBits) {
+        return network != null ? clampPrefix(network.getPrefixLength(), addressBits) : addressBits;
+    }
+
+    private static int clampPrefix(int prefixLength, int addressBits) {
+        return Math.max(0, Math.min(prefixLength, addressBits));
     }
 
     private void populateFromCityResponse(GeoLocationData.GeoLocationDataBuilder builder, CityResponse response) {
@@ -179,29 +350,8 @@ public class GeolocationService {
         }
     }
 
-    private boolean isPrivateIP(InetAddress address) {
-        // Check for private IP ranges
-        byte[] addr = address.getAddress();
-
-        if (addr.length == 4) { // IPv4
-            // 10.0.0.0/8
-            if (addr[0] == 10) return true;
-
-            // 172.16.0.0/12
-            if (addr[0] == (byte) 172 && (addr[1] & 0xF0) == 16) return true;
-
-            // 192.168.0.0/16
-            if (addr[0] == (byte) 192 && addr[1] == (byte) 168) return true;
-
-            // 127.0.0.0/8 (loopback)
-            if (addr[0] == 127) return true;
-        }
-
-        // Add IPv6 private ranges if needed
-        return false;
-    }
-
+    // Follows readiness, so the app also answers 503 while starting up or draining
     public boolean isServiceAvailable() {
-        return maxMindService.isInitialized();
+        return availability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC && maxMindService.isInitialized();
     }
 }
@@ -0,0 +1,135 @@
+package com.nyusta.geolocation_api.service;
+
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.utils.IPAddress;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Single-flight for network-cache misses. Concurrent misses in the same coarse block (/24 for IPv4,
+// /48 for IPv6) and profile wait for the one database read already in flight, then re-probe the
+// cache: the leader stored its network, which answers every follower inside it. Followers outside
+// that network (the block held several) or whose leader failed do their own read, without waiting
+// a second time. A leader stuck on slow I/O only holds its followers up to MAX_WAIT_MILLIS; then
+// they read for themselves too.
+@Component
+public class LookupCoalescer {
+    private static final int IPV4_BLOCK = 96 + 24;
+    private static final int IPV6_BLOCK = 48;
+    private static final long MAX_WAIT_MILLIS = 50; // a database read normally takes microseconds
+
+    @FunctionalInterface
+    public interface Loader {
+        GeoLocationData load() throws Exception;
+    }
+
+    // shared is set when the data came from another request's read; its ip is the leader's
+    public record Loaded(GeoLocationData data, boolean shared) {
+    }
+
+    private final NetworkPrefixCache networkCache;
+    private final ConcurrentHashMap<FlightKey, Flight> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter coalesced;
+    private final Counter uncoalesced;
+    private final Counter timedOut;
+    private final Timer waitTimer;
+
+    public LookupCoalescer(NetworkPrefixCache networkCache, MeterRegistry meterRegistry) {
+        this.networkCache = networkCache;
+        this.leaders = Counter.builder("geolocation.lookup.coalescing")
+                .description("Cache misses by how their database read was shared")
+                .tag("role", "leader")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("geolocation.lookup.coalescing")
+                .description("Cache misses by how their database read was shared")
+                .tag("role", "coalesced")
+                .register(meterRegistry);
+        this.uncoalesced = Counter.builder("geolocation.lookup.coalescing")
+                .description("Cache misses by how their database read was shared")
+                .tag("role", "waited-then-loaded")
+                .register(meterRegistry);
+        this.timedOut = Counter.builder("geolocation.lookup.coalescing")
+                .description("Cache misses by how their database read was shared")
+                .tag("role", "timed-out-then-loaded")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("geolocation.lookup.coalescing.wait")
+                .description("Time a cache miss waited for another request's database read")
+                .register(meterRegistry);
+        Gauge.builder("geolocation.lookup.inflight", inFlight, ConcurrentHashMap::size)
+                .description("Database reads in flight that other misses can join")
+                .register(meterRegistry);
+    }
+
+    public Loaded load(IPAddress address, LookupProfile profile, Loader loader) throws Exception {
+        FlightKey key = FlightKey.of(address, profile);
+        Flight mine = new Flight(address);
+        Flight leader = inFlight.putIfAbsent(key, mine);
+        if (leader == null) {
+            leaders.increment();
+            try {
+                GeoLocationData data = loader.load();
+                mine.result.complete(data);
+                return new Loaded(data, false);
+            } catch (Exception | Error e) {
+                mine.result.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        }
+
+        long waitStart = System.nanoTime();
+        GeoLocationData leaderData = null;
+        try {
+            leaderData = leader.result.get(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // The leader's error is its own; this request reads for itself below
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+            timedOut.increment();
+            return new Loaded(loader.load(), false);
+        }
+        waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+
+        if (leaderData != null && leader.address.equals(address)) {
+            coalesced.increment();
+            return new Loaded(leaderData, true);
+        }
+        GeoLocationData cached = networkCache.get(address, profile);
+        if (cached != null) {
+            coalesced.increment();
+            return new Loaded(cached, true);
+        }
+        uncoalesced.increment();
+        return new Loaded(loader.load(), false);
+    }
+
+    private record FlightKey(long hi, long lo, LookupProfile profile) {
+        static FlightKey of(IPAddress address, LookupProfile profile) {
+            int block = address.isIPv4() ? IPV4_BLOCK : IPV6_BLOCK;
+            return new FlightKey(IPAddress.maskHigh(address.high(), block), IPAddress.maskLow(address.low(), block),
+                    profile);
+        }
+    }
+
+    private static final class Flight {
+        private final IPAddress address;
+        private final CompletableFuture<GeoLocationData> result = new CompletableFuture<>();
+
+        Flight(IPAddress address) {
+            this.address = address;
+        }
+    }
+}
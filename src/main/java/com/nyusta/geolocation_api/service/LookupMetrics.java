@@ -0,0 +1,128 @@
+package com.nyusta.geolocation_api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Meters for GeolocationService.getLocationByIP. Every meter is registered up front and kept in
+// arrays indexed by enum ordinal, so recording on the lookup path is a plain array read.
+// Timers publish p50/p95/p99 and a percentile histogram, so Prometheus can aggregate p99 per stage.
+@Component
+public class LookupMetrics {
+    public enum Stage {
+        PARSE,    // literal parsing
+        RESERVED, // special-purpose / internal range check
+        COMPILED, // compiled IPv4 range table
+        CACHE,    // network cache probe
+        CITY,
+        COUNTRY,  // only runs when the City lookup missed
+        ASN
+    }
+
+    // Which part of the pipeline produced the answer
+    public enum Source {
+        RESERVED, COMPILED, CACHE, DATABASE,
+        COALESCED // another request's in-flight database read
+    }
+
+    public enum Miss {
+        CITY, COUNTRY, ASN
+    }
+
+    public enum Error {
+        INVALID, UNAVAILABLE, FAILURE
+    }
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final Timer[] stageTimers;
+    private final Timer[] lookupTimers;
+    private final Counter[] notFound;
+    private final Counter[] errors;
+    private final Counter countryFallbacks;
+    private final Map<String, Counter> privateIps;
+
+    public LookupMetrics(MeterRegistry meterRegistry, ReservedRanges reservedRanges) {
+        stageTimers = new Timer[Stage.values().length];
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = timer("geolocation.lookup.stage", "Time spent in one lookup stage")
+                    .tag("stage", tagValue(stage))
+                    .register(meterRegistry);
+        }
+        lookupTimers = new Timer[Source.values().length];
+        for (Source source : Source.values()) {
+            lookupTimers[source.ordinal()] = timer("geolocation.lookup", "End-to-end getLocationByIP time")
+                    .tag("source", tagValue(source))
+                    .register(meterRegistry);
+        }
+        notFound = new Counter[Miss.values().length];
+        for (Miss miss : Miss.values()) {
+            notFound[miss.ordinal()] = Counter.builder("geolocation.lookup.not.found")
+                    .description("Lookups a database had no record for")
+                    .tag("database", tagValue(miss))
+                    .register(meterRegistry);
+        }
+        errors = new Counter[Error.values().length];
+        for (Error error : Error.values()) {
+            errors[error.ordinal()] = Counter.builder("geolocation.lookup.errors")
+                    .description("Lookups that failed instead of returning a result")
+                    .tag("type", tagValue(error))
+                    .register(meterRegistry);
+        }
+        countryFallbacks = Counter.builder("geolocation.lookup.fallbacks")
+                .description("City misses answered from the Country database")
+                .tag("to", "country")
+                .register(meterRegistry);
+        // Tagged by range, a small fixed set (IANA tags plus configured internal tags)
+        Map<String, Counter> privateIpCounters = new HashMap<>();
+        for (String range : reservedRanges.tags()) {
+            privateIpCounters.put(range, Counter.builder("geolocation.lookup.private")
+                    .description("Lookups answered from a reserved or internal range")
+                    .tag("range", range)
+                    .register(meterRegistry));
+        }
+        privateIps = Map.copyOf(privateIpCounters);
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        stageTimers[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLookup(Source source, long nanos) {
+        lookupTimers[source.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void notFound(Miss miss) {
+        notFound[miss.ordinal()].increment();
+    }
+
+    public void error(Error error) {
+        errors[error.ordinal()].increment();
+    }
+
+    public void countryFallback() {
+        countryFallbacks.increment();
+    }
+
+    // range is a ReservedRanges tag
+    public void privateIp(String range) {
+        privateIps.get(range).increment();
+    }
+
+    private static Timer.Builder timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram();
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,159 @@
+package com.nyusta.geolocation_api.service;
+
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+// Which databases a lookup reads, planned from the requested profile or fields. Results are cached
+// per profile, since a COUNTRY entry holds less than a FULL one.
+public enum LookupProfile {
+    FULL(true, false, true),            // City (with Country fallback) + ASN
+    CITY(true, false, false),           // City (with Country fallback)
+    COUNTRY(false, true, false),        // Country DB only
+    NETWORK(false, false, true),        // ASN DB only
+    COUNTRY_NETWORK(false, true, true); // Country + ASN, only reachable through fields=
+
+    // Fields by the database that provides them; the rest come with every profile
+    private static final Set<String> COUNTRY_FIELDS = Set.of("country", "countryCode", "continent", "euCountry");
+    private static final Set<String> CITY_FIELDS = Set.of("region", "regionCode", "city", "postalCode", "timezone",
+            "latitude", "longitude", "accuracyRadius");
+    private static final Set<String> ASN_FIELDS = Set.of("asn", "asnOrganization", "isp");
+    private static final Set<String> COMMON_FIELDS = Set.of("ip", "network", "source", "timestamp", "privateIP",
+            "reservedRange");
+
+    private final boolean city;
+    private final boolean country;
+    private final boolean asn;
+
+    LookupProfile(boolean city, boolean country, boolean asn) {
+        this.city = city;
+        this.country = country;
+        this.asn = asn;
+    }
+
+    public boolean usesCity() {
+        return city;
+    }
+
+    // Country DB queried directly, not just as the City fallback
+    public boolean usesCountry() {
+        return country;
+    }
+
+    public boolean usesAsn() {
+        return asn;
+    }
+
+    public static LookupProfile named(String name) {
+        if (name == null || name.isBlank()) {
+            return FULL;
+        }
+        return switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "full" -> FULL;
+            case "city" -> CITY;
+            case "country" -> COUNTRY;
+            case "network" -> NETWORK;
+            default -> throw new IllegalArgumentException("Unknown profile: " + name);
+        };
+    }
+
+    // The cheapest profile that can answer every requested field
+    public static LookupProfile forFields(Set<String> fields) {
+        boolean needsCity = false;
+        boolean needsCountry = false;
+        boolean needsAsn = false;
+        for (String field : fields) {
+            needsCity |= CITY_FIELDS.contains(field);
+            needsCountry |= COUNTRY_FIELDS.contains(field);
+            needsAsn |= ASN_FIELDS.contains(field);
+        }
+        if (needsCity) {
+            return needsAsn ? FULL : CITY;
+        }
+        if (needsAsn) {
+            return needsCountry ? COUNTRY_NETWORK : NETWORK;
+        }
+        return COUNTRY;
+    }
+
+    // Comma-separated JSON field names; isEuCountry/isPrivateIP are accepted for the boolean flags
+    public static Set<String> parseFields(String fields) {
+        Set<String> parsed = new HashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (name.equals("isEuCountry")) {
+                name = "euCountry";
+            } else if (name.equals("isPrivateIP")) {
+                name = "privateIP";
+            }
+            if (!COUNTRY_FIELDS.contains(name) && !CITY_FIELDS.contains(name)
+                    && !ASN_FIELDS.contains(name) && !COMMON_FIELDS.contains(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name);
+            }
+            parsed.add(name);
+        }
+        if (parsed.isEmpty()) {
+            throw new IllegalArgumentException("No fields requested");
+        }
+        return parsed;
+    }
+
+    // Copy with only the given fields set; the boolean flags are primitives and always serialized
+    public static GeoLocationData project(GeoLocationData data, Set<String> fields) {
+        GeoLocationData.GeoLocationDataBuilder builder = GeoLocationData.builder()
+                .isEuCountry(data.isEuCountry())
+                .isPrivateIP(data.isPrivateIP());
+        for (String field : fields) {
+            switch (field) {
+                case "ip" -> builder.ip(data.getIp());
+                case "country" -> builder.country(data.getCountry());
+                case "countryCode" -> builder.countryCode(data.getCountryCode());
+                case "region" -> builder.region(data.getRegion());
+                case "regionCode" -> builder.regionCode(data.getRegionCode());
+                case "city" -> builder.city(data.getCity());
+                case "postalCode" -> builder.postalCode(data.getPostalCode());
+                case "timezone" -> builder.timezone(data.getTimezone());
+                case "continent" -> builder.continent(data.getContinent());
+                case "latitude" -> builder.latitude(data.getLatitude());
+                case "longitude" -> builder.longitude(data.getLongitude());
+                case "isp" -> builder.isp(data.getIsp());
+                case "asn" -> builder.asn(data.getAsn());
+                case "asnOrganization" -> builder.asnOrganization(data.getAsnOrganization());
+                case "accuracyRadius" -> builder.accuracyRadius(data.getAccuracyRadius());
+                case "network" -> builder.network(data.getNetwork());
+                case "source" -> builder.source(data.getSource());
+                case "timestamp" -> builder.timestamp(data.getTimestamp());
+                case "reservedRange" -> builder.reservedRange(data.getReservedRange());
+                default -> {
+                    // euCountry / privateIP: copied above
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    // Drops fields the profile doesn't provide, so e.g. a COUNTRY answer served from the compiled
+    // City table looks the same as one read from the Country database
+    public GeoLocationData trim(GeoLocationData data) {
+        if (this == FULL) {
+            return data;
+        }
+        GeoLocationData.GeoLocationDataBuilder builder = data.toBuilder();
+        if (!city) {
+            builder.region(null).regionCode(null).city(null).postalCode(null).timezone(null)
+                    .latitude(null).longitude(null).accuracyRadius(null);
+        }
+        if (!asn) {
+            builder.asn(null).asnOrganization(null).isp(null);
+        }
+        if (!city && !country) {
+            builder.country(null).countryCode(null).continent(null).isEuCountry(false);
+        }
+        return builder.build();
+    }
+}
@@ -1,69 +1,216 @@
 package com.nyusta.geolocation_api.service;
 
+import com.maxmind.db.CHMCache;
+import com.maxmind.db.Reader;
 import com.maxmind.geoip2.DatabaseReader;
-import com.maxmind.geoip2.exception.GeoIp2Exception;
-import com.maxmind.geoip2.model.AsnResponse;
-import com.maxmind.geoip2.model.CityResponse;
-import com.maxmind.geoip2.model.CountryResponse;
 import com.nyusta.geolocation_api.config.MaxMindProperties;
+import com.nyusta.geolocation_api.event.DatabaseUpdatedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
 import org.springframework.stereotype.Service;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.InetAddress;
-import java.net.URL;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
 public class MaxMindDatabaseService {
     private final MaxMindProperties properties;
-    private final Map<String, DatabaseReader> databaseReaders = new HashMap<>();
-    private volatile boolean initialized = false;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DatabaseDownloader downloader;
+    private final ThreadPoolTaskExecutor downloadExecutor;
+    private final ThreadPoolTaskScheduler refreshScheduler;
+    private final AtomicReference<DatabaseGeneration> current = new AtomicReference<>();
+    private final AtomicLong generationCounter = new AtomicLong();
+    private final Object readinessLock = new Object();
+    private boolean holdingReadiness; // we refused traffic at startup and owe an ACCEPTING_TRAFFIC
 
-    public MaxMindDatabaseService(MaxMindProperties properties) {
+    public MaxMindDatabaseService(MaxMindProperties properties, ApplicationEventPublisher eventPublisher,
+                                  MeterRegistry meterRegistry, DatabaseDownloader downloader,
+                                  @Qualifier("databaseDownloadExecutor") ThreadPoolTaskExecutor downloadExecutor) {
         this.properties = properties;
+        this.eventPublisher = eventPublisher;
+        this.downloader = downloader;
+        this.downloadExecutor = downloadExecutor;
+        // Refresh has a thread of its own: it can run for minutes (downloads, the compiled index,
+        // retries) and would hold up every @Scheduled task on Boot's single scheduler thread. Not the
+        // download pool either, since refresh waits on that pool's tasks. Kept out of the context,
+        // as a TaskScheduler bean would replace Boot's default scheduler.
+        this.refreshScheduler = new ThreadPoolTaskScheduler();
+        refreshScheduler.setPoolSize(1);
+        refreshScheduler.setThreadNamePrefix("db-refresh-");
+        refreshScheduler.initialize();
+        registerSizeGauges(meterRegistry);
+        registerGenerationGauges(meterRegistry);
     }
 
+    private void registerGenerationGauges(MeterRegistry meterRegistry) {
+        Gauge.builder("maxmind.database.generation", this, MaxMindDatabaseService::getGeneration)
+                .description("Id of the database generation serving lookups")
+                .register(meterRegistry);
+        Gauge.builder("maxmind.database.loaded.age", current, ref -> {
+                    DatabaseGeneration generation = ref.get();
+                    return generation != null ? secondsSince(generation.getLoadedAt()) : Double.NaN;
+                })
+                .description("Time since the serving generation was loaded")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+
+        if (properties.getDatabases() == null) {
+            return;
+        }
+        for (String dbType : properties.getDatabases().keySet()) {
+            Gauge.builder("maxmind.database.age", current, ref -> {
+                        DatabaseGeneration generation = ref.get();
+                        Instant buildDate = generation != null ? generation.getBuildDate(dbType) : null;
+                        return buildDate != null ? secondsSince(buildDate) : Double.NaN;
+                    })
+                    .description("Time since MaxMind built the loaded database")
+                    .baseUnit("seconds")
+                    .tag("database", dbType)
+                    .register(meterRegistry);
+        }
+    }
+
+    private static double secondsSince(Instant instant) {
+        return Duration.between(instant, Instant.now()).toMillis() / 1000.0;
+    }
+
+    private void registerSizeGauges(MeterRegistry meterRegistry) {
+        if (properties.getDatabases() == null) {
+            return;
+        }
+        for (String dbType : properties.getDatabases().keySet()) {
+            MaxMindProperties.ReaderSettings settings = properties.getReaderSettings(dbType);
+            Gauge.builder("maxmind.database.size.bytes", current, ref -> {
+                        DatabaseGeneration generation = ref.get();
+                        return generation != null ? generation.getSize(dbType) : 0;
+                    })
+                    .description("File size of the loaded database; held on heap in MEMORY mode, mapped in MEMORY_MAPPED mode")
+                    .baseUnit("bytes")
+                    .tag("database", dbType)
+                    .tag("mode", settings.getFileMode().name())
+                    .register(meterRegistry);
+        }
+    }
+
+    // Only opens what is already on disk, so startup takes seconds; downloads and the compiled index
+    // follow in the background, and readiness stays REFUSING_TRAFFIC until a generation is live
     @PostConstruct
     public void initialize() {
         log.info("Initializing MaxMind database service...");
         try {
             createDatabaseDirectory();
-            downloadDatabasesIfNeeded();
-            loadDatabases();
-            initialized = true;
-            log.info("MaxMind database service initialized successfully");
-        } catch (Exception e) {
-            log.error("Failed to initialize MaxMind database service", e);
+        } catch (IOException e) {
             throw new RuntimeException("MaxMind initialization failed", e);
         }
+        loadFromDisk();
+        refreshScheduler.schedule(this::refresh, Instant.now());
+        refreshScheduler.schedule(this::scheduledDatabaseUpdate, new CronTrigger("0 0 2 * * ?")); // Daily at 2 AM
+    }
+
+    public void loadFromDisk() {
+        try {
+            if (properties.getDatabases().values().stream()
+                    .anyMatch(filename -> Files.exists(Paths.get(properties.getDatabasePath(), filename)))) {
+                publish(loadGeneration(false));
+                log.info("MaxMind database service serving generation {} from disk", getGeneration());
+            } else {
+                log.info("No MaxMind databases on disk yet, waiting for the background download");
+            }
+        } catch (Exception e) {
+            // The background refresh downloads fresh copies
+            log.error("Failed to load MaxMind databases from disk", e);
+        }
+    }
+
+    // Downloads missing or stale editions and builds a new generation when anything changed, or when
+    // the serving one was opened without its compiled index. Retries until a generation is live.
+    public synchronized void refresh() {
+        try {
+            boolean downloaded = downloadDatabasesIfNeeded();
+            boolean needsIndex = properties.getLookupEngine() == MaxMindProperties.LookupEngine.COMPILED
+                    && getCompiledIndex() == null;
+            if (downloaded || needsIndex || !isInitialized()) {
+                publish(loadGeneration(true));
+                log.info("Now serving MaxMind database generation {}", getGeneration());
+            } else {
+                log.info("Databases are up to date, keeping generation {}", getGeneration());
+            }
+        } catch (Exception e) {
+            // The previous generation, if any, stays live
+            log.error("MaxMind database refresh failed, still serving generation {}", getGeneration(), e);
+        }
+        if (!isInitialized()) {
+            Duration delay = properties.getDownload().getRetryDelay();
+            log.warn("No MaxMind databases available, retrying in {}", delay);
+            refreshScheduler.schedule(this::refresh, Instant.now().plus(delay));
+        }
+    }
+
+    // Boot declares readiness once the context is up; without a generation we can't serve yet
+    @EventListener
+    public void onReadinessChange(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() != ReadinessState.ACCEPTING_TRAFFIC) {
+            return;
+        }
+        synchronized (readinessLock) {
+            if (!isInitialized()) {
+                holdingReadiness = true;
+                AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+            }
+        }
     }
     @PreDestroy
     public void cleanup() {
         log.info("Cleaning up MaxMind database readers...");
-        databaseReaders.values().forEach(reader -> {
-            try {
-                reader.close();
-            } catch (IOException e) {
-                log.warn("Error closing database reader", e);
+        refreshScheduler.shutdown();
+        DatabaseGeneration previous = current.getAndSet(null);
+        if (previous != null) {
+            previous.retire();
+        }
+    }
+
+    // Returns the live generation with a reference held; callers must close() it when done
+    public DatabaseGeneration acquire() {
+        while (true) {
+            DatabaseGeneration generation = current.get();
+            if (generation == null) {
+                throw new IllegalStateException("MaxMind database service not initialized");
+            }
+            if (generation.retain()) {
+                return generation;
             }
-        });
-        databaseReaders.clear();
+            // Lost a race with a swap that already drained this generation; pick up the new one
+        }
     }
 
     private void createDatabaseDirectory() throws IOException {
@@ -73,24 +220,49 @@ public class MaxMindDatabaseService {
             log.info("Created database directory: {}", dbPath);
         }
     }
-    private void downloadDatabasesIfNeeded() throws IOException {
+    // Editions download concurrently; one failing doesn't hold back the others, and a missing
+    // file is reported when the generation is loaded
+    private boolean downloadDatabasesIfNeeded() {
         if (!properties.isAutoUpdate()) {
             log.info("Auto-update disabled, skipping database download");
-            return;
+            return false;
         }
 
+        Map<String, CompletableFuture<DatabaseDownloader.Outcome>> downloads = new LinkedHashMap<>();
         for (Map.Entry<String, String> entry : properties.getDatabases().entrySet()) {
             String dbType = entry.getKey();
-            String filename = entry.getValue();
-            Path dbFile = Paths.get(properties.getDatabasePath(), filename);
+            Path dbFile = Paths.get(properties.getDatabasePath(), entry.getValue());
 
             if (!Files.exists(dbFile) || isDatabaseOutdated(dbFile)) {
-                log.info("Downloading {} database...", dbType);
-                downloadAndExtractDatabase(dbType, filename);
+                log.info("Checking for a newer {} database...", dbType);
+                downloads.put(dbType, CompletableFuture.supplyAsync(() -> download(dbType, dbFile), downloadExecutor));
             } else {
                 log.debug("{} database is up to date", dbType);
             }
         }
+
+        boolean downloaded = false;
+        for (Map.Entry<String, CompletableFuture<DatabaseDownloader.Outcome>> entry : downloads.entrySet()) {
+            try {
+                downloaded |= entry.getValue().join() == DatabaseDownloader.Outcome.UPDATED;
+            } catch (CompletionException e) {
+                log.error("Failed to download {} database", entry.getKey(), e.getCause());
+            }
+        }
+        return downloaded;
+    }
+
+    private DatabaseDownloader.Outcome download(String dbType, Path dbFile) {
+        try {
+            DatabaseDownloader.Outcome outcome = downloader.download(dbType, dbFile);
+            if (outcome == DatabaseDownloader.Outcome.NOT_MODIFIED) {
+                // Restart the update interval; the installed copy is still current
+                Files.setLastModifiedTime(dbFile, FileTime.from(Instant.now()));
+            }
+            return outcome;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
     private boolean isDatabaseOutdated(Path dbFile) {
         try {
@@ -105,116 +277,175 @@ public class MaxMindDatabaseService {
             return true;
         }
     }
-    private void downloadAndExtractDatabase(String dbType, String filename) throws IOException {
-        String downloadUrl = properties.getDownloadUrls().get(dbType);
-        if (downloadUrl == null) {
-            throw new IllegalArgumentException("No download URL configured for database type: " + dbType);
+    // Builds a complete generation off to the side; nothing is visible to lookups until publish().
+    // Databases are opened in parallel, which matters for MEMORY mode where each is read onto the heap.
+    private DatabaseGeneration loadGeneration(boolean compile) throws IOException {
+        Map<String, CompletableFuture<OpenedDatabase>> opening = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : properties.getDatabases().entrySet()) {
+            String dbType = entry.getKey();
+            Path dbFile = Paths.get(properties.getDatabasePath(), entry.getValue());
+            if (Files.exists(dbFile)) {
+                opening.put(dbType, CompletableFuture.supplyAsync(() -> openDatabase(dbType, dbFile), downloadExecutor));
+            } else {
+                log.warn("{} database not found: {}", dbType, dbFile);
+            }
         }
 
-        // Download compressed file
-        Path tempFile = Paths.get(properties.getDatabasePath(), filename + ".tar.gz");
-        try (InputStream in = new URL(downloadUrl).openStream();
-             FileOutputStream out = new FileOutputStream(tempFile.toFile())) {
-
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = in.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
+        Map<String, DatabaseReader> readers = new HashMap<>();
+        Map<String, Reader> networkReaders = new HashMap<>();
+        Map<String, Long> sizes = new HashMap<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<OpenedDatabase>> entry : opening.entrySet()) {
+            try {
+                OpenedDatabase opened = entry.getValue().join();
+                readers.put(entry.getKey(), opened.reader());
+                networkReaders.put(entry.getKey(), opened.networkReader());
+                sizes.put(entry.getKey(), opened.size());
+            } catch (CompletionException e) {
+                failures.add(e.getCause());
             }
         }
+        if (!failures.isEmpty()) {
+            IOException e = new IOException("Failed to open MaxMind databases", failures.get(0));
+            failures.stream().skip(1).forEach(e::addSuppressed);
+            closeAll(readers.values(), networkReaders.values(), e);
+            throw e;
+        }
 
-        // Extract the .mmdb file from tar.gz
-        extractMmdbFromTarGz(tempFile, filename);
-
-        // Clean up temp file
-        Files.deleteIfExists(tempFile);
-        log.info("Successfully downloaded and extracted {} database", dbType);
+        if (readers.isEmpty()) {
+            throw new IOException("No MaxMind databases could be loaded from " + properties.getDatabasePath());
+        }
+        return new DatabaseGeneration(generationCounter.incrementAndGet(), readers, networkReaders, sizes,
+                compile ? compileIndex(readers) : null);
     }
-    private void extractMmdbFromTarGz(Path tarGzFile, String targetFilename) throws IOException {
-        Path outputPath = Paths.get(properties.getDatabasePath(), targetFilename);
 
-        try (FileInputStream fis = new FileInputStream(tarGzFile.toFile());
-             GzipCompressorInputStream gzis = new GzipCompressorInputStream(fis);
-             TarArchiveInputStream tais = new TarArchiveInputStream(gzis)) {
+    private OpenedDatabase openDatabase(String dbType, Path dbFile) {
+        MaxMindProperties.ReaderSettings settings = properties.getReaderSettings(dbType);
+        DatabaseReader reader = null;
+        try {
+            DatabaseReader.Builder builder = new DatabaseReader.Builder(dbFile.toFile())
+                    .fileMode(settings.getFileMode());
+            if (settings.getCacheSize() > 0) {
+                builder.withCache(new CHMCache(settings.getCacheSize()));
+            }
+            reader = builder.build();
+            // Only walks the tree on misses; always mapped so MEMORY mode doesn't hold the file twice
+            Reader networkReader = new Reader(dbFile.toFile(), Reader.FileMode.MEMORY_MAPPED);
 
-            TarArchiveEntry entry;
-            while ((entry = tais.getNextTarEntry()) != null) {
-                if (entry.getName().endsWith(".mmdb")) {
-                    try (FileOutputStream fos = new FileOutputStream(outputPath.toFile())) {
-                        byte[] buffer = new byte[8192];
-                        int bytesRead;
-                        while ((bytesRead = tais.read(buffer)) != -1) {
-                            fos.write(buffer, 0, bytesRead);
-                        }
-                    }
-                    break;
+            long size = Files.size(dbFile);
+            log.info("Loaded {} database: {} ({} MB {}, record cache {})", dbType, dbFile,
+                    String.format("%.1f", size / (1024.0 * 1024.0)),
+                    settings.getFileMode() == Reader.FileMode.MEMORY ? "on heap" : "memory-mapped",
+                    settings.getCacheSize() > 0 ? settings.getCacheSize() + " entries" : "disabled");
+            return new OpenedDatabase(reader, networkReader, size);
+        } catch (IOException | RuntimeException e) {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException closeEx) {
+                    e.addSuppressed(closeEx);
                 }
             }
+            throw e instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) e;
         }
     }
-    private void loadDatabases() throws IOException {
-        for (Map.Entry<String, String> entry : properties.getDatabases().entrySet()) {
-            String dbType = entry.getKey();
-            String filename = entry.getValue();
-            Path dbFile = Paths.get(properties.getDatabasePath(), filename);
 
-            if (Files.exists(dbFile)) {
-                DatabaseReader reader = new DatabaseReader.Builder(dbFile.toFile()).build();
-                databaseReaders.put(dbType, reader);
-                log.info("Loaded {} database: {}", dbType, dbFile);
-            } else {
-                log.warn("{} database not found: {}", dbType, dbFile);
+    private static void closeAll(Iterable<DatabaseReader> readers, Iterable<Reader> networkReaders, Exception e) {
+        for (DatabaseReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException closeEx) {
+                e.addSuppressed(closeEx);
             }
         }
-    }
-    public CountryResponse getCountryResponse(InetAddress ipAddress) throws IOException, GeoIp2Exception {
-        DatabaseReader reader = databaseReaders.get("country");
-        if (reader == null) {
-            throw new IllegalStateException("Country database not loaded");
+        for (Reader reader : networkReaders) {
+            try {
+                reader.close();
+            } catch (IOException closeEx) {
+                e.addSuppressed(closeEx);
+            }
         }
-        return reader.country(ipAddress);
     }
 
-    public CityResponse getCityResponse(InetAddress ipAddress) throws IOException, GeoIp2Exception {
-        DatabaseReader reader = databaseReaders.get("city");
-        if (reader == null) {
-            throw new IllegalStateException("City database not loaded");
+    private record OpenedDatabase(DatabaseReader reader, Reader networkReader, long size) {
+    }
+
+    private CompiledIpv4Index compileIndex(Map<String, DatabaseReader> readers) {
+        if (properties.getLookupEngine() != MaxMindProperties.LookupEngine.COMPILED || !readers.containsKey("city")) {
+            return null;
+        }
+        try {
+            Path asnFile = readers.containsKey("asn") ? databaseFile("asn") : null;
+            return CompiledIpv4Index.build(databaseFile("city").toFile(), asnFile != null ? asnFile.toFile() : null);
+        } catch (Exception e) {
+            // Lookups still work through the MMDB readers, just slower
+            log.error("Failed to compile IPv4 index, falling back to MMDB lookups", e);
+            return null;
         }
-        return reader.city(ipAddress);
     }
 
-    public AsnResponse getAsnResponse(InetAddress ipAddress) throws IOException, GeoIp2Exception {
-        DatabaseReader reader = databaseReaders.get("asn");
-        if (reader == null) {
-            throw new IllegalStateException("ASN database not loaded");
+    private Path databaseFile(String dbType) {
+        return Paths.get(properties.getDatabasePath(), properties.getDatabases().get(dbType));
+    }
+
+    private void publish(DatabaseGeneration next) {
+        DatabaseGeneration previous = current.getAndSet(next);
+        if (previous != null) {
+            // Closed by the last in-flight lookup still holding it
+            previous.retire();
+        }
+        eventPublisher.publishEvent(new DatabaseUpdatedEvent(next.getId(), next.getLoadedAt()));
+        synchronized (readinessLock) {
+            if (holdingReadiness) {
+                holdingReadiness = false;
+                AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+            }
         }
-        return reader.asn(ipAddress);
     }
 
     public boolean isInitialized() {
-        return initialized;
+        return current.get() != null;
+    }
+
+    // Build dates of the serving databases, e.g. "asn=1718000000,city=1718000000,country=1718000000";
+    // null before the first generation is loaded
+    public String getDatabaseFingerprint() {
+        if (!isInitialized()) {
+            return null;
+        }
+        try (DatabaseGeneration generation = acquire()) {
+            StringBuilder fingerprint = new StringBuilder();
+            for (String dbType : new TreeSet<>(properties.getDatabases().keySet())) {
+                Instant buildDate = generation.getBuildDate(dbType);
+                if (fingerprint.length() > 0) {
+                    fingerprint.append(',');
+                }
+                fingerprint.append(dbType).append('=').append(buildDate != null ? buildDate.getEpochSecond() : "none");
+            }
+            return fingerprint.toString();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    // The compiled index is plain heap data, so it can be used without holding the generation
+    public CompiledIpv4Index getCompiledIndex() {
+        DatabaseGeneration generation = current.get();
+        return generation != null ? generation.getCompiledIndex() : null;
+    }
+
+    public long getGeneration() {
+        DatabaseGeneration generation = current.get();
+        return generation != null ? generation.getId() : 0;
     }
 
-    @Scheduled(cron = "0 0 2 * * ?") // Daily at 2 AM
     public void scheduledDatabaseUpdate() {
         if (!properties.isAutoUpdate()) {
             return;
         }
 
         log.info("Starting scheduled database update...");
-        try {
-            // Close existing readers
-            cleanup();
-
-            // Download and reload
-            downloadDatabasesIfNeeded();
-            loadDatabases();
-            initialized = true;
-
-            log.info("Scheduled database update completed successfully");
-        } catch (Exception e) {
-            log.error("Scheduled database update failed", e);
-            initialized = false;
-        }
+        // Lookups keep using the current generation throughout
+        refresh();
     }
 }
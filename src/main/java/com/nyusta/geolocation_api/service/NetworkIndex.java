@@ -0,0 +1,368 @@
+package com.nyusta.geolocation_api.service;
+
+import com.maxmind.db.DatabaseRecord;
+import com.maxmind.db.MaxMindDbConstructor;
+import com.maxmind.db.MaxMindDbParameter;
+import com.maxmind.db.Network;
+import com.maxmind.db.Networks;
+import com.maxmind.db.Reader;
+import com.nyusta.geolocation_api.utils.IPAddress;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// Inverted index from ASN and country code to the networks the databases assign them, built by
+// walking each tree once per generation. Prefixes are stored flat in primitive arrays grouped by
+// key, so a key is just a slice [from, to) in address order. IPv4 networks are kept IPv4-mapped
+// like the cache keys (prefix length 96-128), so both families share one encoding.
+@Slf4j
+public final class NetworkIndex {
+    private static final int IPV4_OFFSET = 96;
+
+    public enum Family {
+        ALL, IPV4, IPV6
+    }
+
+    private final long generation;
+    private final Postings<Long> asns;
+    private final Postings<String> countries;
+
+    private NetworkIndex(long generation, Postings<Long> asns, Postings<String> countries) {
+        this.generation = generation;
+        this.asns = asns;
+        this.countries = countries;
+    }
+
+    // The caller holds a reference on the generation for the duration of the build
+    public static NetworkIndex build(DatabaseGeneration generation) throws IOException {
+        long startTime = System.nanoTime();
+
+        Postings<Long> asns = Postings.empty();
+        Reader asnReader = generation.networkReader("asn");
+        if (asnReader != null) {
+            asns = collect(asnReader, AsnRecord.class, record -> record.number);
+        }
+
+        // The Country database is a fraction of the size of City and carries the same country codes
+        Postings<String> countries = Postings.empty();
+        Reader countryReader = generation.networkReader("country");
+        if (countryReader == null) {
+            countryReader = generation.networkReader("city");
+        }
+        if (countryReader != null) {
+            countries = collect(countryReader, CountryRecord.class,
+                    record -> record.country != null ? record.country.isoCode : null);
+        }
+
+        NetworkIndex index = new NetworkIndex(generation.getId(), asns, countries);
+        log.info("Built network index for generation {}: {} prefixes over {} ASNs, {} prefixes over {} countries in {} ms",
+                generation.getId(), asns.size(), asns.keyCount(), countries.size(), countries.keyCount(),
+                (System.nanoTime() - startTime) / 1_000_000);
+        return index;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public long getPrefixCount() {
+        return (long) asns.size() + countries.size();
+    }
+
+    public Prefixes byAsn(long asn, Family family) {
+        return asns.get(asn, family);
+    }
+
+    // ISO 3166-1 alpha-2, upper case
+    public Prefixes byCountry(String countryCode, Family family) {
+        return countries.get(countryCode, family);
+    }
+
+    // One pass over the tree in address order, then a stable counting sort by key
+    private static <T, K> Postings<K> collect(Reader reader, Class<T> type, Function<T, K> keyOf)
+            throws IOException {
+        Map<K, Integer> slots = new HashMap<>();
+        Builder builder = new Builder();
+        Networks<T> networks = reader.networks(type);
+        while (networks.hasNext()) {
+            DatabaseRecord<T> record = networks.next();
+            K key = record.getData() != null ? keyOf.apply(record.getData()) : null;
+            if (key == null) {
+                continue;
+            }
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                slot = slots.size();
+                slots.put(key, slot);
+            }
+            builder.add(slot, record.getNetwork());
+        }
+        return builder.toPostings(slots);
+    }
+
+    // A key's prefixes in address order; CIDRs are written straight from the arrays
+    public static final class Prefixes {
+        private static final Prefixes EMPTY = new Prefixes(new long[0], new long[0], new byte[0], 0, 0);
+
+        private final long[] highs;
+        private final long[] lows;
+        private final byte[] lengths; // unsigned: 128 is stored as -128
+        private final int from;
+        private final int to;
+
+        private Prefixes(long[] highs, long[] lows, byte[] lengths, int from, int to) {
+            this.highs = highs;
+            this.lows = lows;
+            this.lengths = lengths;
+            this.from = from;
+            this.to = to;
+        }
+
+        public int size() {
+            return to - from;
+        }
+
+        public boolean isEmpty() {
+            return from == to;
+        }
+
+        public String cidr(int i) {
+            int length = lengths[from + i] & 0xFF;
+            IPAddress network = IPAddress.ofIPv6(highs[from + i], lows[from + i]);
+            return network.toCidr(network.isIPv4() ? length - IPV4_OFFSET : length);
+        }
+
+        // Collapses the slice into the fewest CIDRs covering the same addresses. The input is sorted
+        // and disjoint, so merging only ever involves the last two blocks written: whenever they are
+        // the two halves of one block, they are replaced by it.
+        public Prefixes aggregate() {
+            int n = size();
+            long[] h = new long[n];
+            long[] l = new long[n];
+            byte[] len = new byte[n];
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                h[count] = highs[i];
+                l[count] = lows[i];
+                len[count] = lengths[i];
+                count++;
+                while (count > 1 && siblings(h, l, len, count - 2)) {
+                    count--;
+                    len[count - 1]--;
+                }
+            }
+            return new Prefixes(h, l, len, 0, count);
+        }
+
+        // Blocks i and i + 1 are the lower and upper half of one block
+        private static boolean siblings(long[] h, long[] l, byte[] len, int i) {
+            int length = len[i] & 0xFF;
+            if (length == 0 || (len[i + 1] & 0xFF) != length) {
+                return false;
+            }
+            if (length <= IPV4_OFFSET && isIPv4(h[i], l[i])) {
+                return false; // 0.0.0.0/0 is as wide as IPv4 goes
+            }
+            if (length <= 64) {
+                long bit = 1L << (64 - length);
+                return (h[i] & bit) == 0 && h[i + 1] == (h[i] | bit) && l[i + 1] == l[i];
+            }
+            long bit = 1L << (128 - length);
+            return (l[i] & bit) == 0 && l[i + 1] == (l[i] | bit) && h[i + 1] == h[i];
+        }
+    }
+
+    private static boolean isIPv4(long high, long low) {
+        return high == 0L && (low >>> 32) == 0xFFFFL;
+    }
+
+    private static final class Postings<K> {
+        private final Map<K, Integer> slots;
+        private final int[] offsets; // slot s spans [offsets[s], offsets[s + 1])
+        private final int[] ipv6Starts; // first IPv6 prefix in each slot; IPv4-mapped sorts below it
+        private final long[] highs;
+        private final long[] lows;
+        private final byte[] lengths;
+
+        private Postings(Map<K, Integer> slots, int[] offsets, int[] ipv6Starts, long[] highs, long[] lows,
+                         byte[] lengths) {
+            this.slots = slots;
+            this.offsets = offsets;
+            this.ipv6Starts = ipv6Starts;
+            this.highs = highs;
+            this.lows = lows;
+            this.lengths = lengths;
+        }
+
+        static <K> Postings<K> empty() {
+            return new Postings<>(Map.of(), new int[]{0}, new int[0], new long[0], new long[0], new byte[0]);
+        }
+
+        int size() {
+            return highs.length;
+        }
+
+        int keyCount() {
+            return slots.size();
+        }
+
+        Prefixes get(K key, Family family) {
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                return Prefixes.EMPTY;
+            }
+            int from = offsets[slot];
+            int to = offsets[slot + 1];
+            return switch (family) {
+                case ALL -> new Prefixes(highs, lows, lengths, from, to);
+                case IPV4 -> new Prefixes(highs, lows, lengths, from, ipv6Starts[slot]);
+                case IPV6 -> new Prefixes(highs, lows, lengths, ipv6Starts[slot], to);
+            };
+        }
+    }
+
+    private static final class Builder {
+        private int[] slots = new int[1024];
+        private long[] highs = new long[1024];
+        private long[] lows = new long[1024];
+        private byte[] lengths = new byte[1024];
+        private int size;
+
+        void add(int slot, Network network) {
+            byte[] address = network.getNetworkAddress().getAddress();
+            int prefixLength = network.getPrefixLength();
+            if (address.length == 16 && prefixLength >= IPV4_OFFSET && isIPv4Subtree(address)) {
+                // IPv4 data in an IPv6 tree comes back under ::/96
+                address = Arrays.copyOfRange(address, 12, 16);
+                prefixLength -= IPV4_OFFSET;
+            }
+            IPAddress ip = IPAddress.fromBytes(address);
+            if (size == slots.length) {
+                int capacity = size * 2;
+                slots = Arrays.copyOf(slots, capacity);
+                highs = Arrays.copyOf(highs, capacity);
+                lows = Arrays.copyOf(lows, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            slots[size] = slot;
+            highs[size] = ip.high();
+            lows[size] = ip.low();
+            lengths[size] = (byte) (address.length == 4 ? IPV4_OFFSET + prefixLength : prefixLength);
+            size++;
+        }
+
+        private static boolean isIPv4Subtree(byte[] address) {
+            for (int b = 0; b < 12; b++) {
+                if (address[b] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Tree order is the IPv4 subtree (::/96) first, then IPv6 by address, which is the order
+        // compare() defines; a slot is only sorted if the iterator ever says otherwise
+        <K> Postings<K> toPostings(Map<K, Integer> keys) {
+            int keyCount = keys.size();
+            int[] offsets = new int[keyCount + 1];
+            for (int i = 0; i < size; i++) {
+                offsets[slots[i] + 1]++;
+            }
+            for (int s = 0; s < keyCount; s++) {
+                offsets[s + 1] += offsets[s];
+            }
+
+            int[] next = Arrays.copyOf(offsets, keyCount);
+            long[] h = new long[size];
+            long[] l = new long[size];
+            byte[] len = new byte[size];
+            for (int i = 0; i < size; i++) {
+                int at = next[slots[i]]++;
+                h[at] = highs[i];
+                l[at] = lows[i];
+                len[at] = lengths[i];
+            }
+
+            int[] ipv6Starts = new int[keyCount];
+            for (int s = 0; s < keyCount; s++) {
+                sortSlot(h, l, len, offsets[s], offsets[s + 1]);
+                int at = offsets[s];
+                while (at < offsets[s + 1] && isIPv4(h[at], l[at])) {
+                    at++;
+                }
+                ipv6Starts[s] = at;
+            }
+            return new Postings<>(Map.copyOf(keys), offsets, ipv6Starts, h, l, len);
+        }
+
+        // IPv4-mapped first, then IPv6 by unsigned address; already sorted slots are left alone
+        private static void sortSlot(long[] h, long[] l, byte[] len, int from, int to) {
+            boolean sorted = true;
+            for (int i = from + 1; i < to && sorted; i++) {
+                sorted = compare(h[i - 1], l[i - 1], h[i], l[i]) < 0;
+            }
+            if (sorted) {
+                return;
+            }
+            Integer[] order = new Integer[to - from];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = from + i;
+            }
+            Arrays.sort(order, (a, b) -> compare(h[a], l[a], h[b], l[b]));
+            long[] sh = new long[order.length];
+            long[] sl = new long[order.length];
+            byte[] slen = new byte[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sh[i] = h[order[i]];
+                sl[i] = l[order[i]];
+                slen[i] = len[order[i]];
+            }
+            System.arraycopy(sh, 0, h, from, order.length);
+            System.arraycopy(sl, 0, l, from, order.length);
+            System.arraycopy(slen, 0, len, from, order.length);
+        }
+
+        private static int compare(long h1, long l1, long h2, long l2) {
+            boolean v4a = isIPv4(h1, l1);
+            boolean v4b = isIPv4(h2, l2);
+            if (v4a != v4b) {
+                return v4a ? -1 : 1;
+            }
+            int high = Long.compareUnsigned(h1, h2);
+            return high != 0 ? high : Long.compareUnsigned(l1, l2);
+        }
+    }
+
+    // Decoding targets; only the field each index is keyed by
+
+    public static class AsnRecord {
+        private final Long number;
+
+        @MaxMindDbConstructor
+        public AsnRecord(@MaxMindDbParameter(name = "autonomous_system_number") Long number) {
+            this.number = number;
+        }
+    }
+
+    public static class CountryRecord {
+        private final IsoCode country;
+
+        @MaxMindDbConstructor
+        public CountryRecord(@MaxMindDbParameter(name = "country") IsoCode country) {
+            this.country = country;
+        }
+    }
+
+    public static class IsoCode {
+        private final String isoCode;
+
+        @MaxMindDbConstructor
+        public IsoCode(@MaxMindDbParameter(name = "iso_code") String isoCode) {
+            this.isoCode = isoCode;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.nyusta.geolocation_api.service;
+
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import com.nyusta.geolocation_api.event.DatabaseUpdatedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+// Keeps a NetworkIndex for the serving generation. Builds run on their own thread after each swap
+// and hold a reference on the generation they walk, so forward lookups never wait on them; until a
+// build finishes, queries are answered from the previous generation's index.
+@Slf4j
+@Service
+public class NetworkIndexService {
+    private final MaxMindDatabaseService maxMindService;
+    private final TaskExecutor executor;
+    private final GeolocationProperties.Networks settings;
+    private final Timer buildTimer;
+    private volatile NetworkIndex index;
+
+    public NetworkIndexService(MaxMindDatabaseService maxMindService,
+                               @Qualifier("networkIndexExecutor") TaskExecutor executor,
+                               GeolocationProperties properties, MeterRegistry meterRegistry) {
+        this.maxMindService = maxMindService;
+        this.executor = executor;
+        this.settings = properties.getNetworks();
+        this.buildTimer = Timer.builder("geolocation.networks.index.build")
+                .description("Time to build the reverse network index for a database generation")
+                .register(meterRegistry);
+        Gauge.builder("geolocation.networks.index.prefixes", this, service -> {
+                    NetworkIndex current = service.index;
+                    return current != null ? current.getPrefixCount() : 0;
+                })
+                .description("Prefixes held by the reverse network index")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    // The latest index built, or null before the first build completes
+    public NetworkIndex getIndex() {
+        return index;
+    }
+
+    // The generation loaded from disk at startup is published before listeners exist; pick it up here
+    @EventListener
+    public void onReadinessChange(AvailabilityChangeEvent<ReadinessState> event) {
+        if (settings.isEnabled() && event.getState() == ReadinessState.ACCEPTING_TRAFFIC
+                && maxMindService.isInitialized()) {
+            executor.execute(this::rebuild);
+        }
+    }
+
+    @EventListener
+    public void onDatabaseUpdated(DatabaseUpdatedEvent event) {
+        if (settings.isEnabled()) {
+            executor.execute(this::rebuild);
+        }
+    }
+
+    // Indexes whatever generation is serving now; queued requests for a generation that is already
+    // indexed (or superseded by the time they run) return immediately
+    private void rebuild() {
+        try (DatabaseGeneration generation = maxMindService.acquire()) {
+            NetworkIndex current = index;
+            if (current != null && current.getGeneration() >= generation.getId()) {
+                return;
+            }
+            long start = System.nanoTime();
+            NetworkIndex built = NetworkIndex.build(generation);
+            buildTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            index = built;
+        } catch (IllegalStateException e) {
+            log.debug("No database generation to index yet");
+        } catch (Exception e) {
+            // The previous index, if any, keeps serving
+            log.error("Failed to build the reverse network index", e);
+        }
+    }
+}
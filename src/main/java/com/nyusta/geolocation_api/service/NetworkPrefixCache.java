@@ -0,0 +1,161 @@
+package com.nyusta.geolocation_api.service;
+
+import com.nyusta.geolocation_api.config.CacheConfig;
+import com.nyusta.geolocation_api.event.DatabaseUpdatedEvent;
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.utils.IPAddress;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Geolocation cache keyed by the network (CIDR block) a result was resolved from rather than by IP.
+// MaxMind networks partition the address space and entries are stored under the intersection of the
+// City and ASN networks, so cached blocks never overlap. A lookup only probes the prefix lengths that
+// have been stored, most used first, and the first hit is the one and only match.
+// IPv4 is kept in IPv4-mapped form (::ffff:0:0/96) so both families share one key space.
+@Slf4j
+@Component
+public class NetworkPrefixCache {
+    private static final int MAX_PREFIX = 128;
+    private static final int IPV4_OFFSET = 96;
+    private static final int REORDER_INTERVAL = 1024;
+
+    private final Cache cache;
+    private final Timer loadTimer;
+
+    // Entries stored per prefix length; drives probe order. Only reset on invalidation,
+    // so evicted lengths may cost an extra probe until then.
+    private final AtomicLongArray storedPerLength = new AtomicLongArray(MAX_PREFIX + 1);
+    private volatile int[] probeOrder = new int[0];
+
+    // Database generation the entries belong to; results from an older generation are not stored
+    private volatile long generation;
+
+    public NetworkPrefixCache(CacheManager cacheManager, MeterRegistry meterRegistry) {
+        this.cache = cacheManager.getCache(CacheConfig.GEOLOCATIONS);
+        this.loadTimer = Timer.builder("geolocation.cache.load")
+                .description("Time to resolve a cache miss against the MaxMind databases")
+                .register(meterRegistry);
+    }
+
+    public GeoLocationData get(IPAddress address, LookupProfile profile) {
+        long hi = address.high();
+        long lo = address.low();
+        for (int prefixLength : probeOrder) {
+            GeoLocationData data = cache.get(new NetworkKey(IPAddress.maskHigh(hi, prefixLength),
+                    IPAddress.maskLow(lo, prefixLength), prefixLength, profile), GeoLocationData.class);
+            if (data != null) {
+                return data;
+            }
+        }
+        return null;
+    }
+
+    // prefixLength is in the address's own family (0-32 for IPv4); loadNanos is recorded as load time
+    public void put(IPAddress address, LookupProfile profile, int prefixLength, GeoLocationData data,
+                    long dataGeneration, long loadNanos) {
+        loadTimer.record(loadNanos, TimeUnit.NANOSECONDS);
+        if (dataGeneration < generation) {
+            return;
+        }
+
+        int length = address.isIPv4()
+                ? IPV4_OFFSET + Math.min(Math.max(prefixLength, 0), 32)
+                : Math.min(Math.max(prefixLength, 0), MAX_PREFIX);
+
+        NetworkKey key = new NetworkKey(IPAddress.maskHigh(address.high(), length),
+                IPAddress.maskLow(address.low(), length), length, profile);
+        cache.put(key, data);
+        if (dataGeneration < generation) {
+            // A swap invalidated the cache while we were storing; don't leave a stale entry behind
+            cache.evict(key);
+            return;
+        }
+
+        long stored = storedPerLength.incrementAndGet(length);
+        if (stored == 1 || stored % REORDER_INTERVAL == 0) {
+            reorder();
+        }
+    }
+
+    @EventListener
+    public void onDatabaseUpdated(DatabaseUpdatedEvent event) {
+        generation = Math.max(generation, event.getGeneration());
+        invalidate();
+    }
+
+    public void invalidate() {
+        probeOrder = new int[0];
+        for (int i = 0; i <= MAX_PREFIX; i++) {
+            storedPerLength.set(i, 0);
+        }
+        cache.clear();
+        log.debug("Network prefix cache invalidated");
+    }
+
+    // Most frequently used entries first, as ranked by Caffeine's eviction policy (arbitrary order if
+    // the cache is unbounded)
+    List<NetworkKey> hottest(int limit) {
+        @SuppressWarnings("unchecked")
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache =
+                (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+        Map<Object, Object> entries = nativeCache.policy().eviction()
+                .map(eviction -> eviction.hottest(limit))
+                .orElseGet(nativeCache::asMap);
+
+        List<NetworkKey> keys = new ArrayList<>(Math.min(limit, entries.size()));
+        for (Object key : entries.keySet()) {
+            if (keys.size() == limit) {
+                break;
+            }
+            if (key instanceof NetworkKey networkKey) {
+                keys.add(networkKey);
+            }
+        }
+        return keys;
+    }
+
+    private synchronized void reorder() {
+        int count = 0;
+        int[] lengths = new int[MAX_PREFIX + 1];
+        for (int i = 0; i <= MAX_PREFIX; i++) {
+            if (storedPerLength.get(i) > 0) {
+                lengths[count++] = i;
+            }
+        }
+
+        // Insertion sort by usage, most common first; at most 129 elements
+        for (int i = 1; i < count; i++) {
+            int current = lengths[i];
+            long weight = storedPerLength.get(current);
+            int j = i - 1;
+            while (j >= 0 && storedPerLength.get(lengths[j]) < weight) {
+                lengths[j + 1] = lengths[j];
+                j--;
+            }
+            lengths[j + 1] = current;
+        }
+
+        int[] order = new int[count];
+        System.arraycopy(lengths, 0, order, 0, count);
+        probeOrder = order;
+    }
+
+    // Profiles cache separately: a COUNTRY entry can't answer a FULL lookup, and its block may be wider.
+    // prefixLength is in the shared 128-bit space (96-128 for IPv4).
+    record NetworkKey(long hi, long lo, int prefixLength, LookupProfile profile) {
+        IPAddress network() {
+            return IPAddress.ofIPv6(hi, lo);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.nyusta.geolocation_api.service;
+
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Static k-d tree over PoP locations as points on the unit sphere. Straight-line (chord) distance
+// between unit vectors grows monotonically with great-circle distance, so the k nearest by chord are
+// the k nearest on the globe, with no special cases at the poles or the antimeridian.
+// The tree is implicit: the points are permuted so that every subrange [lo, hi) is split at its
+// midpoint, with the split axis stored per node. A query allocates only its k-best list and result.
+public final class PopIndex {
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final GeolocationProperties.Pop[] pops;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final byte[] axes;
+
+    // Ascending by distance; pops are positions for get(int)
+    public record Neighbours(int[] pops, double[] distancesKm) {
+        public int size() {
+            return pops.length;
+        }
+    }
+
+    private PopIndex(GeolocationProperties.Pop[] pops, double[] xs, double[] ys, double[] zs, byte[] axes) {
+        this.pops = pops;
+        this.xs = xs;
+        this.ys = ys;
+        this.zs = zs;
+        this.axes = axes;
+    }
+
+    public static PopIndex build(List<GeolocationProperties.Pop> locations) {
+        int n = locations.size();
+        double[][] points = new double[n][];
+        for (int i = 0; i < n; i++) {
+            GeolocationProperties.Pop pop = locations.get(i);
+            if (pop.getId() == null || Math.abs(pop.getLatitude()) > 90 || Math.abs(pop.getLongitude()) > 180) {
+                throw new IllegalArgumentException("Invalid PoP definition at index " + i + ": " + pop);
+            }
+            points[i] = unitVector(pop.getLatitude(), pop.getLongitude());
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        byte[] axes = new byte[n];
+        split(order, points, axes, 0, n);
+
+        GeolocationProperties.Pop[] pops = new GeolocationProperties.Pop[n];
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        double[] zs = new double[n];
+        for (int i = 0; i < n; i++) {
+            pops[i] = locations.get(order[i]);
+            xs[i] = points[order[i]][0];
+            ys[i] = points[order[i]][1];
+            zs[i] = points[order[i]][2];
+        }
+        return new PopIndex(pops, xs, ys, zs, axes);
+    }
+
+    public int size() {
+        return pops.length;
+    }
+
+    public GeolocationProperties.Pop get(int index) {
+        return pops[index];
+    }
+
+    public Neighbours nearest(double latitude, double longitude, int k) {
+        double[] q = unitVector(latitude, longitude);
+        int limit = Math.min(k, pops.length);
+        Search search = new Search(q[0], q[1], q[2], limit);
+        if (limit > 0) {
+            search.visit(0, pops.length);
+        }
+
+        double[] distances = new double[search.count];
+        for (int i = 0; i < search.count; i++) {
+            // chord c subtends an angle of 2 asin(c / 2)
+            double chord = Math.min(2.0, Math.sqrt(search.chords[i]));
+            distances[i] = 2 * EARTH_RADIUS_KM * Math.asin(chord / 2);
+        }
+        return new Neighbours(Arrays.copyOf(search.found, search.count), distances);
+    }
+
+    // Orders [lo, hi) so that its midpoint is the median along the axis of widest spread, then recurses
+    private static void split(Integer[] order, double[][] points, byte[] axes, int lo, int hi) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int axis = widestAxis(order, points, lo, hi);
+        // A full sort per level; the tree is built once from a few hundred points
+        Arrays.sort(order, lo, hi, Comparator.comparingDouble(i -> points[i][axis]));
+        int mid = (lo + hi) >>> 1;
+        axes[mid] = (byte) axis;
+        split(order, points, axes, lo, mid);
+        split(order, points, axes, mid + 1, hi);
+    }
+
+    private static int widestAxis(Integer[] order, double[][] points, int lo, int hi) {
+        int widest = 0;
+        double widestSpread = -1;
+        for (int axis = 0; axis < 3; axis++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i++) {
+                double v = points[order[i]][axis];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (max - min > widestSpread) {
+                widestSpread = max - min;
+                widest = axis;
+            }
+        }
+        return widest;
+    }
+
+    private static double[] unitVector(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        return new double[]{cosLat * Math.cos(lon), cosLat * Math.sin(lon), Math.sin(lat)};
+    }
+
+    // Bounded k-best list kept sorted by insertion; k is small, so this beats a heap
+    private final class Search {
+        private final double x;
+        private final double y;
+        private final double z;
+        private final int[] found;
+        private final double[] chords; // squared chord lengths
+        private int count;
+
+        Search(double x, double y, double z, int k) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.found = new int[k];
+            this.chords = new double[k];
+        }
+
+        void visit(int lo, int hi) {
+            if (lo >= hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            double dx = x - xs[mid];
+            double dy = y - ys[mid];
+            double dz = z - zs[mid];
+            offer(mid, dx * dx + dy * dy + dz * dz);
+            if (hi - lo == 1) {
+                return;
+            }
+
+            double delta = switch (axes[mid]) {
+                case 0 -> dx;
+                case 1 -> dy;
+                default -> dz;
+            };
+            // Points left of mid are <= it on the split axis, points right of it >=
+            if (delta < 0) {
+                visit(lo, mid);
+                if (count < found.length || delta * delta < chords[count - 1]) {
+                    visit(mid + 1, hi);
+                }
+            } else {
+                visit(mid + 1, hi);
+                if (count < found.length || delta * delta < chords[count - 1]) {
+                    visit(lo, mid);
+                }
+            }
+        }
+
+        private void offer(int pop, double chord) {
+            if (count == found.length && chord >= chords[count - 1]) {
+                return;
+            }
+            int i = count < found.length ? count++ : count - 1;
+            while (i > 0 && chords[i - 1] > chord) {
+                found[i] = found[i - 1];
+                chords[i] = chords[i - 1];
+                i--;
+            }
+            found[i] = pop;
+            chords[i] = chord;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.nyusta.geolocation_api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.modal.NearestPop;
+import com.nyusta.geolocation_api.utils.IPAddress;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Nearest configured PoPs for an address, from the City coordinates of its network. Rankings are
+// computed for max-k PoPs and keyed weakly by the network cache entry they came from, so each
+// cached network is ranked once and its ranking disappears with the entry (eviction, expiry or a
+// database swap), the same way SerializedResponseCache keeps its fragments.
+@Slf4j
+@Component
+public class PopLocator {
+    private static final double MIN_RADIUS_KM = 1;
+    private static final PopIndex.Neighbours NONE = new PopIndex.Neighbours(new int[0], new double[0]);
+
+    // location is the cached City data for the network; its ip may be another address in the block
+    public record Result(GeoLocationData location, List<NearestPop> pops) {
+    }
+
+    private final GeolocationService geolocationService;
+    private final NetworkPrefixCache networkCache;
+    private final ReservedRanges reservedRanges;
+    private final GeolocationProperties.Pops settings;
+    private final PopIndex index;
+    private final Cache<GeoLocationData, PopIndex.Neighbours> rankings = Caffeine.newBuilder().weakKeys().build();
+    private final Timer queryTimer;
+
+    public PopLocator(GeolocationService geolocationService, NetworkPrefixCache networkCache,
+                      ReservedRanges reservedRanges, GeolocationProperties properties, MeterRegistry meterRegistry) {
+        this.geolocationService = geolocationService;
+        this.networkCache = networkCache;
+        this.reservedRanges = reservedRanges;
+        this.settings = properties.getPops();
+        this.index = PopIndex.build(settings.getLocations());
+        this.queryTimer = Timer.builder("geolocation.pops.nearest")
+                .description("Time to find the nearest PoPs for an address, lookup included")
+                .register(meterRegistry);
+        log.info("Indexed {} PoPs", index.size());
+    }
+
+    public boolean isEnabled() {
+        return index.size() > 0;
+    }
+
+    public Result nearest(String ip, Integer k) {
+        long start = System.nanoTime();
+        int limit = k != null ? k : settings.getDefaultK();
+        if (limit < 1 || limit > settings.getMaxK()) {
+            throw new IllegalArgumentException("k must be between 1 and " + settings.getMaxK());
+        }
+        IPAddress address = IPAddress.parse(ip);
+        if (address == null) {
+            throw new IllegalArgumentException("Invalid IP address: " + ip);
+        }
+
+        GeoLocationData cached = reservedRanges.match(address) == null
+                ? networkCache.get(address, LookupProfile.CITY)
+                : null;
+        GeoLocationData location;
+        PopIndex.Neighbours neighbours;
+        if (cached != null) {
+            location = cached;
+            neighbours = rankings.get(cached, this::rank);
+        } else {
+            // The lookup caches the network, so the next address in it takes the branch above
+            location = geolocationService.getLocationByIP(ip, LookupProfile.CITY);
+            neighbours = rank(location);
+        }
+
+        List<NearestPop> pops = weigh(neighbours, limit, location.getAccuracyRadius());
+        queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new Result(location, pops);
+    }
+
+    private PopIndex.Neighbours rank(GeoLocationData location) {
+        if (location.getLatitude() == null || location.getLongitude() == null) {
+            return NONE;
+        }
+        return index.nearest(location.getLatitude(), location.getLongitude(), settings.getMaxK());
+    }
+
+    // The client can be anywhere within the accuracy radius, so a PoP a little further than the
+    // nearest may well be closer. Weights fall off exponentially with the extra distance over the
+    // nearest, on the scale of the radius: a precise location sends nearly everything to the
+    // nearest PoP, a vague one spreads it across the k.
+    private List<NearestPop> weigh(PopIndex.Neighbours neighbours, int k, Integer accuracyRadius) {
+        int count = Math.min(k, neighbours.size());
+        double radius = Math.max(MIN_RADIUS_KM,
+                accuracyRadius != null ? accuracyRadius : settings.getDefaultAccuracyRadius());
+        double[] distances = neighbours.distancesKm();
+        double[] weights = new double[count];
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            weights[i] = Math.exp(-(distances[i] - distances[0]) / radius);
+            total += weights[i];
+        }
+
+        List<NearestPop> pops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            GeolocationProperties.Pop pop = index.get(neighbours.pops()[i]);
+            pops.add(NearestPop.builder()
+                    .id(pop.getId())
+                    .name(pop.getName())
+                    .latitude(pop.getLatitude())
+                    .longitude(pop.getLongitude())
+                    .distanceKm(distances[i])
+                    .weight(weights[i] / total)
+                    .build());
+        }
+        return pops;
+    }
+}
@@ -0,0 +1,84 @@
+package com.nyusta.geolocation_api.service;
+
+import com.nyusta.geolocation_api.config.MaxMindProperties;
+import com.nyusta.geolocation_api.utils.CidrTrie;
+import com.nyusta.geolocation_api.utils.IPAddress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// IANA special-purpose blocks (RFC 6890 and successors) plus any configured internal ranges.
+// Addresses in these blocks can never be in the GeoLite2 data, so they are answered up front.
+@Slf4j
+@Component
+public class ReservedRanges {
+    private static final String[][] IANA_RANGES = {
+            // IPv4
+            {"0.0.0.0/8", "this-network"},
+            {"10.0.0.0/8", "private"},
+            {"100.64.0.0/10", "CGNAT"},
+            {"127.0.0.0/8", "loopback"},
+            {"169.254.0.0/16", "link-local"},
+            {"172.16.0.0/12", "private"},
+            {"192.0.0.0/24", "ietf-protocol"},
+            {"192.0.2.0/24", "documentation"},
+            {"192.88.99.0/24", "6to4-relay"},
+            {"192.168.0.0/16", "private"},
+            {"198.18.0.0/15", "benchmarking"},
+            {"198.51.100.0/24", "documentation"},
+            {"203.0.113.0/24", "documentation"},
+            {"224.0.0.0/4", "multicast"},
+            {"240.0.0.0/4", "reserved"},
+            {"255.255.255.255/32", "broadcast"},
+            // IPv6 (IPv4-mapped addresses are checked against the IPv4 table)
+            {"::/128", "unspecified"},
+            {"::1/128", "loopback"},
+            {"64:ff9b:1::/48", "nat64-local"},
+            {"100::/64", "discard"},
+            {"2001:2::/48", "benchmarking"},
+            {"2001:db8::/32", "documentation"},
+            {"3fff::/20", "documentation"},
+            {"fc00::/7", "ULA"},
+            {"fe80::/10", "link-local"},
+            {"ff00::/8", "multicast"}
+    };
+
+    private final CidrTrie<Match> trie = new CidrTrie<>();
+    private final Set<String> tags = new LinkedHashSet<>();
+
+    public ReservedRanges(MaxMindProperties properties) {
+        for (String[] range : IANA_RANGES) {
+            add(range[0], range[1]);
+        }
+
+        // Internal ranges are inserted last so they can refine (or relabel) an IANA block
+        Map<String, List<String>> internalRanges = properties.getInternalRanges();
+        if (internalRanges != null) {
+            internalRanges.forEach((tag, cidrs) -> cidrs.forEach(cidr -> add(cidr, tag)));
+            log.info("Loaded {} reserved ranges ({} internal tags)", trie.size(), internalRanges.size());
+        }
+    }
+
+    // The most specific reserved block containing the address, or null if it is publicly routable
+    public Match match(IPAddress address) {
+        return trie.longestMatch(address);
+    }
+
+    // Every tag a match can carry
+    public Set<String> tags() {
+        return Set.copyOf(tags);
+    }
+
+    private void add(String cidr, String tag) {
+        tags.add(tag);
+        CidrTrie.Cidr parsed = CidrTrie.Cidr.parse(cidr);
+        trie.insert(parsed.address(), parsed.prefixLength(), new Match(tag, parsed.prefixLength()));
+    }
+
+    public record Match(String tag, int prefixLength) {
+    }
+}
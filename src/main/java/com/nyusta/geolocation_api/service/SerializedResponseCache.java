@@ -0,0 +1,88 @@
+package com.nyusta.geolocation_api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.utils.IPAddress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Complete GeoLocationResponse bodies for network-cache hits, assembled from a JSON fragment that is
+// serialized once per cached GeoLocationData. Only the per-request fields (ip, processingTime) are
+// written per request. Fragments are keyed weakly by the cached instance, so they disappear together
+// with the network cache entry (eviction, expiry or a database swap) without separate invalidation.
+// The output matches what Jackson writes for GeoLocationResponse.success(data, processingTime).
+@Slf4j
+@Component
+public class SerializedResponseCache {
+    private static final byte[] PREFIX = "{\"success\":true,\"data\":{\"ip\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PROCESSING_TIME = ",\"processingTime\":".getBytes(StandardCharsets.US_ASCII);
+
+    private final NetworkPrefixCache networkCache;
+    private final ReservedRanges reservedRanges;
+    private final LookupMetrics metrics;
+    private final TrafficAnalytics analytics;
+    private final ObjectMapper objectMapper;
+    private final Cache<GeoLocationData, byte[]> fragments = Caffeine.newBuilder().weakKeys().build();
+
+    public SerializedResponseCache(NetworkPrefixCache networkCache, ReservedRanges reservedRanges,
+                                   LookupMetrics metrics, TrafficAnalytics analytics, ObjectMapper objectMapper) {
+        this.networkCache = networkCache;
+        this.reservedRanges = reservedRanges;
+        this.metrics = metrics;
+        this.analytics = analytics;
+        this.objectMapper = objectMapper;
+    }
+
+    // The response body for a cache hit, or null when the lookup has to take the normal path
+    public byte[] successBody(String ip, long startNanos) {
+        IPAddress address = IPAddress.parse(ip);
+        if (address == null || reservedRanges.match(address) != null) {
+            return null;
+        }
+        GeoLocationData cached = networkCache.get(address, LookupProfile.FULL);
+        if (cached == null) {
+            return null;
+        }
+        byte[] fragment = fragments.get(cached, this::fragment);
+        if (fragment == null) {
+            return null;
+        }
+
+        // ip is a validated literal, so it never needs escaping
+        ByteArrayOutputStream body = new ByteArrayOutputStream(PREFIX.length + ip.length() + fragment.length + 32);
+        body.writeBytes(PREFIX);
+        body.writeBytes(ip.getBytes(StandardCharsets.US_ASCII));
+        body.write('"');
+        body.writeBytes(fragment);
+        body.writeBytes(PROCESSING_TIME);
+        long elapsed = System.nanoTime() - startNanos;
+        body.writeBytes(Double.toString(elapsed / 1_000_000.0).getBytes(StandardCharsets.US_ASCII));
+        body.write('}');
+
+        metrics.recordLookup(LookupMetrics.Source.CACHE, elapsed);
+        analytics.record(ip, cached);
+        return body.toByteArray();
+    }
+
+    // Everything after the ip field, up to and including the data object's closing brace
+    private byte[] fragment(GeoLocationData data) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(data.toBuilder().ip(null).build());
+            if (json.length == 2) {
+                return new byte[]{'}'}; // "{}": ip is the only field
+            }
+            // Turn the leading '{' into the ',' that follows the spliced-in ip
+            json[0] = ',';
+            return json;
+        } catch (JsonProcessingException e) {
+            log.warn("Could not pre-serialize cached location", e);
+            return null;
+        }
+    }
+}
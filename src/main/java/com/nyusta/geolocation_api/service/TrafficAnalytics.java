@@ -0,0 +1,305 @@
+package com.nyusta.geolocation_api.service;
+
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.modal.TrafficWindow;
+import com.nyusta.geolocation_api.utils.CountMinSketch;
+import com.nyusta.geolocation_api.utils.HyperLogLog;
+import com.nyusta.geolocation_api.utils.SpaceSaving;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Live aggregates over answered lookups in tumbling windows: top countries and ASNs, distinct
+// addresses overall and per country, and the EU share. Everything is a fixed-size sketch, so memory
+// is the same at 10 or 10 million lookups per window:
+//   - lookup counts per country and ASN in count-min sketches, one per stripe (threads are spread
+//     over stripes by id, so a hot country doesn't have every thread incrementing the same cells)
+//   - top-K candidates in a space-saving table per stripe, ranked on read by the merged sketches
+//   - distinct addresses in HyperLogLogs, shared: once warm they are almost read-only
+// The lookup path never blocks. The candidate table is the only non-atomic structure; a thread that
+// finds its stripe's table busy skips the update (the count still lands in the sketch) rather than
+// wait. Closed windows are kept only as their summaries. A writer may have read the window just
+// before it was swapped out, so a window is summarized one rotation after it closed, once those
+// writers are long done; closed windows therefore show up in recentWindows() one window late.
+@Component
+public class TrafficAnalytics {
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 2048; // counts overestimate by at most ~0.13% of the window's lookups
+    private static final int CANDIDATES = 256; // per stripe and dimension; ASNs are long-tailed
+    private static final int HLL_PRECISION = 10; // ~3% error, 1 KB each
+    private static final int COUNTRY_SLOTS = 26 * 26; // every two-letter code
+    private static final long COUNTRY_KEY = 1L << 62; // ASNs are 32-bit, so the two key spaces can't collide
+
+    private final GeolocationProperties.Analytics settings;
+    private final int stripeMask;
+    private final Counter contended;
+    private final Deque<TrafficWindow> closed = new ArrayDeque<>();
+    private volatile Window current;
+    private Window draining; // closed but not yet summarized; only rotate() touches it
+
+    public TrafficAnalytics(GeolocationProperties properties, MeterRegistry meterRegistry) {
+        this.settings = properties.getAnalytics();
+        int stripes = settings.getStripes() > 0 ? settings.getStripes() : 2 * Runtime.getRuntime().availableProcessors();
+        stripes = Integer.highestOneBit(Math.max(1, stripes - 1) << 1);
+        this.stripeMask = stripes - 1;
+        this.contended = Counter.builder("geolocation.analytics.contended")
+                .description("Top-K candidate updates skipped because another thread held the stripe")
+                .register(meterRegistry);
+        this.current = new Window(stripes);
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    public long getWindowSeconds() {
+        return settings.getWindow().toSeconds();
+    }
+
+    // ip is the address that was looked up; data may be a cached entry resolved for another one
+    public void record(String ip, GeoLocationData data) {
+        if (!settings.isEnabled() || data == null) {
+            return;
+        }
+        Window window = current;
+        window.lookups.increment();
+        if (data.isPrivateIP()) {
+            window.reserved.increment();
+            return;
+        }
+        long ipHash = hash(ip);
+        window.uniqueIps.add(ipHash);
+
+        Stripe stripe = window.stripes[(int) Thread.currentThread().getId() & stripeMask];
+        int country = countrySlot(data.getCountryCode());
+        if (country >= 0) {
+            window.located.increment();
+            if (data.isEuCountry()) {
+                window.euLookups.increment();
+            }
+            window.countryIps(country).add(ipHash);
+            stripe.counts.add(COUNTRY_KEY | country);
+        }
+        Long asn = data.getAsn();
+        if (asn != null) {
+            stripe.counts.add(asn);
+        }
+
+        if (country < 0 && asn == null) {
+            return;
+        }
+        if (!stripe.busy.compareAndSet(false, true)) {
+            contended.increment();
+            return;
+        }
+        try {
+            if (country >= 0) {
+                stripe.countries.offer(COUNTRY_KEY | country);
+            }
+            if (asn != null) {
+                stripe.asns.offer(asn);
+            }
+        } finally {
+            stripe.busy.set(false);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${geolocation.analytics.window:1m}",
+            initialDelayString = "${geolocation.analytics.window:1m}")
+    public void rotate() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        Window finished = current;
+        Window next = new Window(finished.stripes.length);
+        current = next;
+        Window previous = draining;
+        draining = finished;
+        if (previous == null) {
+            return;
+        }
+        // It ended when its successor started
+        TrafficWindow summary = summarize(previous, finished.start);
+        synchronized (closed) {
+            closed.addFirst(summary);
+            while (closed.size() > settings.getRetainedWindows()) {
+                closed.removeLast();
+            }
+        }
+    }
+
+    // The open window so far
+    public TrafficWindow currentWindow() {
+        return summarize(current, null);
+    }
+
+    // Closed windows, most recent first
+    public List<TrafficWindow> recentWindows(int limit) {
+        synchronized (closed) {
+            return closed.stream().limit(Math.max(0, limit)).toList();
+        }
+    }
+
+    private TrafficWindow summarize(Window window, Instant end) {
+        List<CountMinSketch> sketches = new ArrayList<>(window.stripes.length);
+        long[] countryCandidates = new long[0];
+        long[] asnCandidates = new long[0];
+        for (Stripe stripe : window.stripes) {
+            sketches.add(stripe.counts);
+            // Readers are rare; writers holding the flag release it within a few compares
+            while (!stripe.busy.compareAndSet(false, true)) {
+                Thread.onSpinWait();
+            }
+            try {
+                countryCandidates = concat(countryCandidates, stripe.countries.keys());
+                asnCandidates = concat(asnCandidates, stripe.asns.keys());
+            } finally {
+                stripe.busy.set(false);
+            }
+        }
+
+        Map<String, Long> uniqueByCountry = new LinkedHashMap<>();
+        for (int slot = 0; slot < COUNTRY_SLOTS; slot++) {
+            HyperLogLog ips = window.countryIps.get(slot);
+            if (ips != null) {
+                uniqueByCountry.put(countryCode(slot), ips.estimate());
+            }
+        }
+
+        List<TrafficWindow.HeavyHitter> topCountries = new ArrayList<>();
+        for (long key : top(sketches, countryCandidates)) {
+            String code = countryCode((int) (key & ~COUNTRY_KEY));
+            topCountries.add(new TrafficWindow.HeavyHitter(code, CountMinSketch.estimate(sketches, key),
+                    uniqueByCountry.get(code)));
+        }
+        List<TrafficWindow.HeavyHitter> topAsns = new ArrayList<>();
+        for (long key : top(sketches, asnCandidates)) {
+            topAsns.add(new TrafficWindow.HeavyHitter(String.valueOf(key), CountMinSketch.estimate(sketches, key), null));
+        }
+
+        long located = window.located.sum();
+        long eu = window.euLookups.sum();
+        return TrafficWindow.builder()
+                .start(window.start)
+                .end(end)
+                .lookups(window.lookups.sum())
+                .reserved(window.reserved.sum())
+                .located(located)
+                .euLookups(eu)
+                .euShare(located > 0 ? (double) eu / located : 0)
+                .uniqueIps(window.uniqueIps.estimate())
+                .topCountries(topCountries)
+                .topAsns(topAsns)
+                .uniqueIpsByCountry(uniqueByCountry)
+                .build();
+    }
+
+    // Candidates from every stripe, deduplicated and ranked by their merged count
+    private long[] top(List<CountMinSketch> sketches, long[] candidates) {
+        long[] distinct = Arrays.stream(candidates).distinct().toArray();
+        long[] estimates = new long[distinct.length];
+        Integer[] order = new Integer[distinct.length];
+        for (int i = 0; i < distinct.length; i++) {
+            estimates[i] = CountMinSketch.estimate(sketches, distinct[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> estimates[i]).reversed());
+        int k = Math.min(settings.getTopK(), order.length);
+        long[] top = new long[k];
+        for (int i = 0; i < k; i++) {
+            top[i] = distinct[order[i]];
+        }
+        return top;
+    }
+
+    private static long[] concat(long[] a, long[] b) {
+        long[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    // Upper-case ISO 3166-1 alpha-2 to 0..675, or -1
+    private static int countrySlot(String code) {
+        if (code == null || code.length() != 2) {
+            return -1;
+        }
+        int first = code.charAt(0) - 'A';
+        int second = code.charAt(1) - 'A';
+        if (first < 0 || first >= 26 || second < 0 || second >= 26) {
+            return -1;
+        }
+        return first * 26 + second;
+    }
+
+    private static String countryCode(int slot) {
+        return new String(new char[]{(char) ('A' + slot / 26), (char) ('A' + slot % 26)});
+    }
+
+    // 64-bit FNV-1a over the characters, finished with the Murmur3 mixer; no allocation
+    private static long hash(String ip) {
+        if (ip == null) {
+            return 0;
+        }
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < ip.length(); i++) {
+            h ^= ip.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Window {
+        final Instant start = Instant.now();
+        final Stripe[] stripes;
+        final LongAdder lookups = new LongAdder();
+        final LongAdder reserved = new LongAdder();
+        final LongAdder located = new LongAdder();
+        final LongAdder euLookups = new LongAdder();
+        final HyperLogLog uniqueIps = new HyperLogLog(HLL_PRECISION);
+        final AtomicReferenceArray<HyperLogLog> countryIps = new AtomicReferenceArray<>(COUNTRY_SLOTS);
+
+        Window(int stripes) {
+            this.stripes = new Stripe[stripes];
+            for (int i = 0; i < stripes; i++) {
+                this.stripes[i] = new Stripe();
+            }
+        }
+
+        // Created on a country's first lookup in the window; at most one per two-letter code
+        HyperLogLog countryIps(int slot) {
+            HyperLogLog ips = countryIps.get(slot);
+            if (ips == null) {
+                HyperLogLog created = new HyperLogLog(HLL_PRECISION);
+                ips = countryIps.compareAndSet(slot, null, created) ? created : countryIps.get(slot);
+            }
+            return ips;
+        }
+    }
+
+    private static final class Stripe {
+        final CountMinSketch counts = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+        final SpaceSaving countries = new SpaceSaving(CANDIDATES);
+        final SpaceSaving asns = new SpaceSaving(CANDIDATES);
+        final AtomicBoolean busy = new AtomicBoolean();
+    }
+}
@@ -0,0 +1,114 @@
+package com.nyusta.geolocation_api.utils;
+
+import java.util.Arrays;
+
+// Binary radix trie over CIDR blocks with longest-prefix-match lookup. Nodes live in parallel int
+// arrays (index 0 = IPv4 root, 1 = IPv6 root, 0 as a child means "none"), so a lookup walks at most
+// as many bits as the longest stored prefix on its path and allocates nothing.
+// Build it once, then share it read-only; inserts are not thread-safe.
+public final class CidrTrie<V> {
+    private static final int IPV4_ROOT = 0;
+    private static final int IPV6_ROOT = 1;
+
+    private int[] zero = new int[64];
+    private int[] one = new int[64];
+    private Object[] values = new Object[64];
+    private int nodes = 2;
+    private int entries;
+
+    public void insert(String cidr, V value) {
+        Cidr parsed = Cidr.parse(cidr);
+        insert(parsed.address(), parsed.prefixLength(), value);
+    }
+
+    public void insert(IPAddress address, int prefixLength, V value) {
+        if (prefixLength < 0 || prefixLength > address.bitLength()) {
+            throw new IllegalArgumentException("Invalid prefix length /" + prefixLength + " for " + address);
+        }
+        int node = address.isIPv4() ? IPV4_ROOT : IPV6_ROOT;
+        for (int i = 0; i < prefixLength; i++) {
+            boolean set = bit(address, i);
+            int child = set ? one[node] : zero[node];
+            if (child == 0) {
+                child = newNode();
+                if (set) {
+                    one[node] = child;
+                } else {
+                    zero[node] = child;
+                }
+            }
+            node = child;
+        }
+        if (values[node] == null) {
+            entries++;
+        }
+        values[node] = value;
+    }
+
+    // Value of the most specific block containing the address, or null
+    @SuppressWarnings("unchecked")
+    public V longestMatch(IPAddress address) {
+        int node = address.isIPv4() ? IPV4_ROOT : IPV6_ROOT;
+        Object best = values[node];
+        int bits = address.bitLength();
+        for (int i = 0; i < bits; i++) {
+            node = bit(address, i) ? one[node] : zero[node];
+            if (node == 0) {
+                break;
+            }
+            if (values[node] != null) {
+                best = values[node];
+            }
+        }
+        return (V) best;
+    }
+
+    public boolean contains(IPAddress address) {
+        return longestMatch(address) != null;
+    }
+
+    public boolean isEmpty() {
+        return entries == 0;
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    private static boolean bit(IPAddress address, int index) {
+        if (address.isIPv4()) {
+            return ((address.toIPv4Int() >>> (31 - index)) & 1) != 0;
+        }
+        return index < 64
+                ? ((address.high() >>> (63 - index)) & 1) != 0
+                : ((address.low() >>> (127 - index)) & 1) != 0;
+    }
+
+    // "10.0.0.0/8", "fc00::/7"; a bare address is a host route
+    public record Cidr(IPAddress address, int prefixLength) {
+        public static Cidr parse(String cidr) {
+            String text = cidr.trim();
+            int slash = text.indexOf('/');
+            IPAddress address = IPAddress.parse(text, 0, slash < 0 ? text.length() : slash);
+            if (address == null) {
+                throw new IllegalArgumentException("Invalid CIDR: " + cidr);
+            }
+            try {
+                int prefixLength = slash < 0 ? address.bitLength() : Integer.parseInt(text.substring(slash + 1));
+                return new Cidr(address, prefixLength);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid CIDR prefix length: " + cidr, e);
+            }
+        }
+    }
+
+    private int newNode() {
+        if (nodes == zero.length) {
+            int capacity = nodes * 2;
+            zero = Arrays.copyOf(zero, capacity);
+            one = Arrays.copyOf(one, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        return nodes++;
+    }
+}
@@ -0,0 +1,197 @@
+package com.nyusta.geolocation_api.utils;
+
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Enumeration;
+
+// Client address for a request, trusting forwarding headers only as far as they were written by
+// configured proxies. The socket peer must itself be a trusted proxy before any header is read;
+// X-Forwarded-For / Forwarded are then walked from the right (the entries our own proxies appended)
+// and the first hop that isn't a trusted proxy is the client. Anything left of it is client-supplied
+// and ignored, so a spoofed leftmost entry can't pick the address.
+//
+// Headers are scanned in place with index arithmetic; the common single-header path allocates only
+// the returned substring. The result is memoized on the request, since both admission and the
+// controller ask for it.
+@Slf4j
+@Component
+public class ClientIpResolver {
+    private static final String ATTRIBUTE = ClientIpResolver.class.getName() + ".clientIp";
+    private static final String FALLBACK = "127.0.0.1";
+
+    private final CidrTrie<Boolean> trustedProxies = new CidrTrie<>();
+    private final String[] headers;
+    private final boolean[] rfc7239;
+
+    public ClientIpResolver(GeolocationProperties properties) {
+        GeolocationProperties.ClientIp settings = properties.getClientIp();
+        for (String cidr : settings.getTrustedProxies()) {
+            trustedProxies.insert(cidr, Boolean.TRUE);
+        }
+        headers = settings.getHeaders().toArray(new String[0]);
+        rfc7239 = new boolean[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            rfc7239[i] = headers[i].equalsIgnoreCase("Forwarded");
+        }
+        log.info("Client IP from {} behind {} trusted proxy ranges", settings.getHeaders(), trustedProxies.size());
+    }
+
+    public String resolve(HttpServletRequest request) {
+        Object memoized = request.getAttribute(ATTRIBUTE);
+        if (memoized instanceof String ip) {
+            return ip;
+        }
+        String ip = extract(request);
+        request.setAttribute(ATTRIBUTE, ip);
+        return ip;
+    }
+
+    private String extract(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        IPAddress peer = IPAddress.parse(remoteAddr);
+        if (peer == null) {
+            return FALLBACK;
+        }
+        if (!isTrusted(peer)) {
+            return remoteAddr;
+        }
+
+        for (int i = 0; i < headers.length; i++) {
+            Enumeration<String> values = request.getHeaders(headers[i]);
+            if (values == null || !values.hasMoreElements()) {
+                continue;
+            }
+            String value = values.nextElement();
+            if (values.hasMoreElements()) {
+                // Repeated headers form one list in order (RFC 9110); rare enough to just join
+                StringBuilder joined = new StringBuilder(value);
+                while (values.hasMoreElements()) {
+                    joined.append(',').append(values.nextElement());
+                }
+                value = joined.toString();
+            }
+            String client = fromHeader(value, rfc7239[i]);
+            if (client != null) {
+                return client;
+            }
+        }
+        return remoteAddr;
+    }
+
+    // First untrusted hop from the right, the leftmost hop if every one is a proxy, or null if the
+    // header holds no address
+    private String fromHeader(String value, boolean forwarded) {
+        String leftmost = null;
+        int end = value.length();
+        while (end > 0) {
+            int start = forwarded ? elementStart(value, end) : value.lastIndexOf(',', end - 1) + 1;
+            String hop = forwarded ? forParameter(value, start, end) : hopAddress(value, start, end);
+            end = start - 1;
+            if (hop == null) {
+                // Junk or an obfuscated identifier: nothing further left can be trusted
+                return leftmost;
+            }
+            IPAddress address = IPAddress.parse(hop);
+            if (address == null) {
+                return leftmost;
+            }
+            if (!isTrusted(address)) {
+                return hop;
+            }
+            leftmost = hop;
+        }
+        return leftmost;
+    }
+
+    private boolean isTrusted(IPAddress address) {
+        return !trustedProxies.isEmpty() && trustedProxies.contains(address);
+    }
+
+    // One X-Forwarded-For entry: "1.2.3.4", "1.2.3.4:8080", "2001:db8::1" or "[2001:db8::1]:8080"
+    private static String hopAddress(String value, int from, int to) {
+        while (from < to && value.charAt(from) == ' ') {
+            from++;
+        }
+        while (to > from && value.charAt(to - 1) == ' ') {
+            to--;
+        }
+        if (from == to) {
+            return null;
+        }
+        if (value.charAt(from) == '[') {
+            int close = value.indexOf(']', from);
+            return close > from && close < to ? value.substring(from + 1, close) : null;
+        }
+        int colon = indexOf(value, ':', from, to);
+        if (colon >= 0 && indexOf(value, ':', colon + 1, to) < 0) {
+            // Exactly one colon: IPv4 with a port
+            return value.substring(from, colon);
+        }
+        return value.substring(from, to);
+    }
+
+    private static int indexOf(String value, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (value.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Start of the RFC 7239 element ending at end; commas inside quoted strings don't split elements
+    private static int elementStart(String value, int end) {
+        boolean quoted = false;
+        for (int i = end - 1; i >= 0; i--) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    // The for= node of one RFC 7239 element: for=192.0.2.60, for="[2001:db8::17]:4711", for=unknown
+    private static String forParameter(String value, int from, int to) {
+        int i = from;
+        while (i < to) {
+            while (i < to && (value.charAt(i) == ' ' || value.charAt(i) == ';')) {
+                i++;
+            }
+            int pairEnd = i;
+            boolean quoted = false;
+            while (pairEnd < to) {
+                char c = value.charAt(pairEnd);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == ';' && !quoted) {
+                    break;
+                }
+                pairEnd++;
+            }
+            if (pairEnd - i > 4 && value.regionMatches(true, i, "for=", 0, 4)) {
+                int start = i + 4;
+                int end = pairEnd;
+                while (end > start && value.charAt(end - 1) == ' ') {
+                    end--;
+                }
+                if (end - start >= 2 && value.charAt(start) == '"' && value.charAt(end - 1) == '"') {
+                    start++;
+                    end--;
+                }
+                if (start < end && (value.charAt(start) == '_'
+                        || end - start == 7 && value.regionMatches(true, start, "unknown", 0, 7))) {
+                    return null;
+                }
+                return hopAddress(value, start, end);
+            }
+            i = pairEnd + 1;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,67 @@
+package com.nyusta.geolocation_api.utils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Count-min sketch over long keys: depth rows of width counters, a key adds one to a counter in
+// every row and its estimate is the smallest of them. Estimates never undercount and overcount by
+// at most e/width of the total with probability 1 - e^-depth. Counters are atomic, so adds are
+// lock-free; sketches of the same shape merge by summing, see estimate(List, long).
+public final class CountMinSketch {
+    private final int depth;
+    private final int width;
+    private final int mask;
+    private final AtomicLongArray counters;
+
+    // width is rounded up to a power of two
+    public CountMinSketch(int depth, int width) {
+        this.depth = Math.max(1, depth);
+        this.width = Integer.highestOneBit(Math.max(2, width - 1) << 1);
+        this.mask = this.width - 1;
+        this.counters = new AtomicLongArray(this.depth * this.width);
+    }
+
+    public void add(long key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            counters.incrementAndGet(row * width + ((h1 + row * h2) & mask));
+        }
+    }
+
+    public long estimate(long key) {
+        return estimate(List.of(this), key);
+    }
+
+    // Estimate for the sum of several sketches of the same shape, without materializing the sum
+    public static long estimate(List<CountMinSketch> sketches, long key) {
+        if (sketches.isEmpty()) {
+            return 0;
+        }
+        CountMinSketch shape = sketches.get(0);
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < shape.depth; row++) {
+            int cell = row * shape.width + ((h1 + row * h2) & shape.mask);
+            long sum = 0;
+            for (CountMinSketch sketch : sketches) {
+                sum += sketch.counters.get(cell);
+            }
+            min = Math.min(min, sum);
+        }
+        return min;
+    }
+
+    // MurmurHash3 finalizer; keys are often small and sequential (ASNs, packed country codes)
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,61 @@
+package com.nyusta.geolocation_api.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// HyperLogLog distinct counter over 64-bit hashes: 2^precision one-byte registers packed eight to a
+// long, about 1.04 / sqrt(2^precision) relative error. Registers only ever grow, so once warm most
+// adds read a register and find nothing to do; the rare raise is a CAS, which keeps one instance
+// cheap to share between threads without striping.
+public final class HyperLogLog {
+    private final int precision;
+    private final int registerCount;
+    private final AtomicLongArray registers;
+
+    public HyperLogLog(int precision) {
+        this.precision = Math.min(Math.max(precision, 4), 16);
+        this.registerCount = 1 << this.precision;
+        this.registers = new AtomicLongArray(registerCount / 8);
+    }
+
+    // hash must be well mixed: the top bits pick the register, the rest give the rank
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long rest = (hash << precision) | (1L << (precision - 1)); // caps the rank at 64 - precision + 1
+        int rank = Long.numberOfLeadingZeros(rest) + 1;
+
+        int slot = index >>> 3;
+        int shift = (index & 7) << 3;
+        while (true) {
+            long word = registers.get(slot);
+            if (((word >>> shift) & 0xFF) >= rank) {
+                return;
+            }
+            long updated = (word & ~(0xFFL << shift)) | ((long) rank << shift);
+            if (registers.compareAndSet(slot, word, updated)) {
+                return;
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (int slot = 0; slot < registers.length(); slot++) {
+            long word = registers.get(slot);
+            for (int shift = 0; shift < 64; shift += 8) {
+                int rank = (int) ((word >>> shift) & 0xFF);
+                sum += 1.0 / (1L << rank);
+                if (rank == 0) {
+                    zeros++;
+                }
+            }
+        }
+        double m = registerCount;
+        double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Linear counting is more accurate while many registers are still empty
+            estimate = m * Math.log(m / zeros);
+        }
+        return Math.round(estimate);
+    }
+}
@@ -0,0 +1,352 @@
+package com.nyusta.geolocation_api.utils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+// A parsed IPv4 or IPv6 literal held as two longs. IPv4 (and IPv4-mapped IPv6) addresses are stored
+// in IPv4-mapped form (::ffff:a.b.c.d) so both families share one 128-bit key space.
+// Parsing never resolves names: anything that is not a literal is rejected.
+public final class IPAddress {
+    private static final long IPV4_MAPPED_PREFIX = 0x0000_FFFF_0000_0000L;
+
+    private final boolean ipv4;
+    private final long high;
+    private final long low;
+
+    private IPAddress(boolean ipv4, long high, long low) {
+        this.ipv4 = ipv4;
+        this.high = high;
+        this.low = low;
+    }
+
+    public static IPAddress ofIPv4(int address) {
+        return new IPAddress(true, 0L, IPV4_MAPPED_PREFIX | (address & 0xFFFF_FFFFL));
+    }
+
+    public static IPAddress ofIPv6(long high, long low) {
+        if (high == 0L && (low >>> 32) == 0xFFFFL) {
+            return new IPAddress(true, high, low);
+        }
+        return new IPAddress(false, high, low);
+    }
+
+    public static IPAddress fromBytes(byte[] address) {
+        if (address.length == 4) {
+            return ofIPv4(((address[0] & 0xFF) << 24) | ((address[1] & 0xFF) << 16)
+                    | ((address[2] & 0xFF) << 8) | (address[3] & 0xFF));
+        }
+        if (address.length != 16) {
+            throw new IllegalArgumentException("Invalid address length: " + address.length);
+        }
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; i++) {
+            high = (high << 8) | (address[i] & 0xFF);
+            low = (low << 8) | (address[i + 8] & 0xFF);
+        }
+        return ofIPv6(high, low);
+    }
+
+    // Returns null for anything that is not an IPv4 or IPv6 literal
+    public static IPAddress parse(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        return parse(text, 0, text.length());
+    }
+
+    public static IPAddress parse(CharSequence text, int from, int to) {
+        if (text == null || from >= to) {
+            return null;
+        }
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == ':') {
+                return parseIPv6(text, from, to);
+            }
+        }
+        long ipv4 = parseIPv4(text, from, to);
+        return ipv4 < 0 ? null : ofIPv4((int) ipv4);
+    }
+
+    public static boolean isLiteral(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return false;
+        }
+        return parseIPv4(text, 0, text.length()) >= 0 || parse(text) != null;
+    }
+
+    // Dotted-quad IPv4 as an unsigned value in the low 32 bits, or -1; allocation-free
+    public static long parseIPv4(CharSequence text, int from, int to) {
+        if (to - from < 7 || to - from > 15) {
+            return -1;
+        }
+        long result = 0;
+        int octets = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return -1;
+                }
+            } else if (c == '.') {
+                if (digits == 0 || ++octets > 3) {
+                    return -1;
+                }
+                result = (result << 8) | value;
+                value = 0;
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (digits == 0 || octets != 3) {
+            return -1;
+        }
+        return (result << 8) | value;
+    }
+
+    // RFC 4291 text form including "::" and a trailing dotted IPv4 part; zone ids are rejected.
+    // Groups before "::" accumulate in head, groups after it in tail, and head is shifted into
+    // place at the end, so nothing is allocated besides the result.
+    private static IPAddress parseIPv6(CharSequence text, int from, int to) {
+        if (to - from < 2 || to - from > 45) {
+            return null;
+        }
+        long headHigh = 0, headLow = 0, tailHigh = 0, tailLow = 0;
+        int headGroups = 0;
+        int tailGroups = 0;
+        boolean compressed = false;
+
+        int i = from;
+        if (text.charAt(i) == ':') {
+            if (text.charAt(i + 1) != ':') {
+                return null;
+            }
+            compressed = true;
+            i += 2;
+        }
+
+        while (i < to) {
+            int groupStart = i;
+            int group = 0;
+            while (i < to && i - groupStart < 5) {
+                int digit = hexValue(text.charAt(i));
+                if (digit < 0) {
+                    break;
+                }
+                group = (group << 4) | digit;
+                i++;
+            }
+
+            if (i < to && text.charAt(i) == '.') {
+                // Embedded IPv4 must be the last 32 bits
+                long ipv4 = parseIPv4(text, groupStart, to);
+                if (ipv4 < 0 || headGroups + tailGroups > 6) {
+                    return null;
+                }
+                for (int half = 0; half < 2; half++) {
+                    int part = (int) (half == 0 ? ipv4 >>> 16 : ipv4 & 0xFFFF);
+                    if (compressed) {
+                        tailHigh = (tailHigh << 16) | (tailLow >>> 48);
+                        tailLow = (tailLow << 16) | part;
+                        tailGroups++;
+                    } else {
+                        headHigh = (headHigh << 16) | (headLow >>> 48);
+                        headLow = (headLow << 16) | part;
+                        headGroups++;
+                    }
+                }
+                i = to;
+                break;
+            }
+
+            int length = i - groupStart;
+            if (length == 0 || length > 4) {
+                return null;
+            }
+            if (compressed) {
+                tailHigh = (tailHigh << 16) | (tailLow >>> 48);
+                tailLow = (tailLow << 16) | group;
+                tailGroups++;
+            } else {
+                headHigh = (headHigh << 16) | (headLow >>> 48);
+                headLow = (headLow << 16) | group;
+                headGroups++;
+            }
+            if (headGroups + tailGroups > 8) {
+                return null;
+            }
+
+            if (i == to) {
+                break;
+            }
+            if (text.charAt(i) != ':') {
+                return null;
+            }
+            i++;
+            if (i < to && text.charAt(i) == ':') {
+                if (compressed) {
+                    return null;
+                }
+                compressed = true;
+                i++;
+            } else if (i == to) {
+                return null; // trailing single colon
+            }
+        }
+
+        int groups = headGroups + tailGroups;
+        if (compressed ? groups > 7 : groups != 8) {
+            return null;
+        }
+
+        // Move head to the top of the 128 bits, leaving room for the elided zeros and the tail
+        for (int shift = 8 - headGroups; shift > 0; shift--) {
+            headHigh = (headHigh << 16) | (headLow >>> 48);
+            headLow <<= 16;
+        }
+        return ofIPv6(headHigh | tailHigh, headLow | tailLow);
+    }
+
+    // ASCII only; Character.digit would also accept non-Latin digits
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    public boolean isIPv4() {
+        return ipv4;
+    }
+
+    // Only meaningful for IPv4
+    public int toIPv4Int() {
+        return (int) low;
+    }
+
+    public long high() {
+        return high;
+    }
+
+    public long low() {
+        return low;
+    }
+
+    public int bitLength() {
+        return ipv4 ? 32 : 128;
+    }
+
+    public byte[] toBytes() {
+        if (ipv4) {
+            int v4 = toIPv4Int();
+            return new byte[]{(byte) (v4 >>> 24), (byte) (v4 >>> 16), (byte) (v4 >>> 8), (byte) v4};
+        }
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (high >>> (56 - 8 * i));
+            bytes[i + 8] = (byte) (low >>> (56 - 8 * i));
+        }
+        return bytes;
+    }
+
+    // Built from the raw bytes, so no name resolution can happen
+    public InetAddress toInetAddress() {
+        try {
+            return InetAddress.getByAddress(toBytes());
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e); // unreachable: length is always 4 or 16
+        }
+    }
+
+    // Prefix length in this address's own family (0-32 for IPv4)
+    public String toCidr(int prefixLength) {
+        int mappedLength = ipv4 ? 96 + prefixLength : prefixLength;
+        IPAddress network = ofIPv6(maskHigh(high, mappedLength), maskLow(low, mappedLength));
+        return network + "/" + prefixLength;
+    }
+
+    // Masks for a prefix length in the shared 128-bit (IPv4-mapped) space
+    public static long maskHigh(long high, int prefixLength) {
+        return prefixLength >= 64 ? high : high & ~(-1L >>> prefixLength);
+    }
+
+    public static long maskLow(long low, int prefixLength) {
+        if (prefixLength <= 64) {
+            return 0L;
+        }
+        return prefixLength == 128 ? low : low & ~(-1L >>> (prefixLength - 64));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IPAddress other)) {
+            return false;
+        }
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high * 31 + low);
+    }
+
+    @Override
+    public String toString() {
+        if (ipv4) {
+            int v4 = toIPv4Int();
+            return (v4 >>> 24) + "." + ((v4 >>> 16) & 0xFF) + "." + ((v4 >>> 8) & 0xFF) + "." + (v4 & 0xFF);
+        }
+
+        // RFC 5952: lower-case hex without leading zeros, and the longest run of two or more zero
+        // groups (the first one on a tie) replaced by "::"
+        int[] groups = new int[8];
+        for (int i = 0; i < 4; i++) {
+            groups[i] = (int) (high >>> (48 - 16 * i)) & 0xFFFF;
+            groups[i + 4] = (int) (low >>> (48 - 16 * i)) & 0xFFFF;
+        }
+        int runStart = -1;
+        int runLength = 1;
+        for (int i = 0; i < 8; ) {
+            if (groups[i] != 0) {
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < 8 && groups[end] == 0) {
+                end++;
+            }
+            if (end - i > runLength) {
+                runStart = i;
+                runLength = end - i;
+            }
+            i = end;
+        }
+
+        StringBuilder sb = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == runStart) {
+                sb.append("::");
+                i += runLength - 1;
+                continue;
+            }
+            if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ':') {
+                sb.append(':');
+            }
+            sb.append(Integer.toHexString(groups[i]));
+        }
+        return sb.toString();
+    }
+}
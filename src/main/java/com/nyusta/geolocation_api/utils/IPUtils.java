@@ -1,63 +0,0 @@
-package com.nyusta.geolocation_api.utils;
-
-import jakarta.servlet.http.HttpServletRequest;
-
-public class IPUtils {
-    private static final String[] IP_HEADERS = {
-            "X-Forwarded-For",
-            "X-Real-IP",
-            "Proxy-Client-IP",
-            "WL-Proxy-Client-IP",
-            "HTTP_X_FORWARDED_FOR",
-            "HTTP_X_FORWARDED",
-            "HTTP_X_CLUSTER_CLIENT_IP",
-            "HTTP_CLIENT_IP",
-            "HTTP_FORWARDED_FOR",
-            "HTTP_FORWARDED",
-            "HTTP_VIA",
-            "REMOTE_ADDR"
-    };
-    public static String getClientIpAddress(HttpServletRequest request) {
-        // Check each header in order
-        for (String header : IP_HEADERS) {
-            String ip = request.getHeader(header);
-            if (ip != null && !ip.isEmpty() && !"unknown".equalsIgnoreCase(ip)) {
-                // Handle comma-separated IPs (take the first one)
-                if (ip.contains(",")) {
-                    ip = ip.split(",")[0].trim();
-                }
-                // Validate IP format
-                if (isValidIP(ip)) {
-                    return ip;
-                }
-            }
-        }
-
-        // Fallback to remote address
-        String remoteAddr = request.getRemoteAddr();
-        return isValidIP(remoteAddr) ? remoteAddr : "127.0.0.1";
-    }
-    private static boolean isValidIP(String ip) {
-        if (ip == null || ip.isEmpty()) {
-            return false;
-        }
-
-        // Basic IPv4 validation
-        String[] parts = ip.split("\\.");
-        if (parts.length != 4) {
-            return false;
-        }
-
-        try {
-            for (String part : parts) {
-                int num = Integer.parseInt(part);
-                if (num < 0 || num > 255) {
-                    return false;
-                }
-            }
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
-        }
-    }
-}
@@ -0,0 +1,138 @@
+package com.nyusta.geolocation_api.utils;
+
+import java.util.Arrays;
+
+// Space-saving heavy hitters over long keys: a fixed set of counters, where an unseen key takes over
+// the smallest counter and inherits its count. Every key whose true count exceeds total / capacity
+// is guaranteed to hold a counter, which is what makes it a good candidate set for top-K.
+// Counters sit in fixed slots, found through an open-addressing table and ordered by a min-heap of
+// slot numbers, so an offer costs one probe sequence plus O(log capacity) heap moves.
+// Not thread-safe; callers serialize access.
+public final class SpaceSaving {
+    private final long[] keys;
+    private final long[] counts;
+    private final int[] heap; // slots, smallest count at the root
+    private final int[] heapIndex; // position of each slot in heap
+    private final int[] table; // slot + 1 by key hash, 0 = empty; at most half full
+    private final int tableMask;
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        int slots = Math.max(1, capacity);
+        this.keys = new long[slots];
+        this.counts = new long[slots];
+        this.heap = new int[slots];
+        this.heapIndex = new int[slots];
+        this.table = new int[Integer.highestOneBit(slots * 2 - 1) << 1];
+        this.tableMask = table.length - 1;
+    }
+
+    public void offer(long key) {
+        int position = find(key);
+        if (table[position] != 0) {
+            int slot = table[position] - 1;
+            counts[slot]++;
+            siftDown(heapIndex[slot]);
+            return;
+        }
+        if (size < keys.length) {
+            int slot = size++;
+            keys[slot] = key;
+            counts[slot] = 1;
+            table[position] = slot + 1;
+            heap[slot] = slot;
+            heapIndex[slot] = slot;
+            siftUp(slot);
+            return;
+        }
+
+        // Evict the smallest counter; its successor starts from its count
+        int slot = heap[0];
+        remove(find(keys[slot]));
+        keys[slot] = key;
+        counts[slot]++;
+        table[find(key)] = slot + 1;
+        siftDown(0);
+    }
+
+    // The keys currently holding a counter, in no particular order
+    public long[] keys() {
+        return Arrays.copyOf(keys, size);
+    }
+
+    // Table position holding the key, or the empty position where it would go
+    private int find(long key) {
+        int position = home(key);
+        while (table[position] != 0 && keys[table[position] - 1] != key) {
+            position = (position + 1) & tableMask;
+        }
+        return position;
+    }
+
+    private int home(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & tableMask;
+    }
+
+    // Backward-shift deletion, so probe sequences never need tombstones
+    private void remove(int position) {
+        table[position] = 0;
+        int hole = position;
+        int next = position;
+        while (true) {
+            next = (next + 1) & tableMask;
+            if (table[next] == 0) {
+                return;
+            }
+            int wanted = home(keys[table[next] - 1]);
+            // Move the entry into the hole unless its home lies cyclically in (hole, next]
+            boolean homeBetween = hole <= next
+                    ? wanted > hole && wanted <= next
+                    : wanted > hole || wanted <= next;
+            if (!homeBetween) {
+                table[hole] = table[next];
+                table[next] = 0;
+                hole = next;
+            }
+        }
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[heap[i]]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && counts[heap[left]] < counts[heap[smallest]]) {
+                smallest = left;
+            }
+            if (right < size && counts[heap[right]] < counts[heap[smallest]]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int slotA = heap[a];
+        int slotB = heap[b];
+        heap[a] = slotB;
+        heap[b] = slotA;
+        heapIndex[slotB] = a;
+        heapIndex[slotA] = b;
+    }
+}
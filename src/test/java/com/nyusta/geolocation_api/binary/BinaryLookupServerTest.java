@@ -0,0 +1,181 @@
+package com.nyusta.geolocation_api.binary;
+
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import com.nyusta.geolocation_api.modal.GeoLocationData;
+import com.nyusta.geolocation_api.service.GeolocationService;
+import com.nyusta.geolocation_api.service.LookupProfile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Timeout(30)
+class BinaryLookupServerTest {
+    private final GeolocationService geolocationService = mock(GeolocationService.class);
+    private BinaryLookupServer server;
+
+    @BeforeEach
+    void setUp() {
+        when(geolocationService.getLocationByIP(anyString(), any(LookupProfile.class)))
+                .thenAnswer(invocation -> location(invocation.getArgument(0)));
+
+        GeolocationProperties properties = new GeolocationProperties();
+        properties.getBinary().setEnabled(true);
+        properties.getBinary().setHost("127.0.0.1");
+        properties.getBinary().setPort(0);
+        properties.getBinary().setThreads(1);
+        // A few responses' worth, so pipelined requests keep hitting the backlog limit
+        properties.getBinary().setMaxPendingBytes(4096);
+        server = new BinaryLookupServer(geolocationService, properties, new SimpleMeterRegistry());
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void roundTripsRecord() throws Exception {
+        try (BinaryLookupClient client = client()) {
+            BinaryLookupClient.Response response = client.lookup("203.0.113.7");
+
+            assertTrue(response.isOk());
+            assertTrue(response.record().found());
+            GeoLocationData data = response.record().data();
+            assertEquals("203.0.113.7", data.getIp());
+            assertEquals("DE", data.getCountryCode());
+            assertEquals("EU", data.getContinent());
+            assertEquals("Berlin", data.getCity());
+            assertEquals("BE", data.getRegionCode());
+            assertEquals(52.52, data.getLatitude(), 1e-4);
+            assertEquals(13.405, data.getLongitude(), 1e-4);
+            assertEquals(20, data.getAccuracyRadius());
+            assertEquals(64496L, data.getAsn());
+            assertEquals("Example Networks", data.getAsnOrganization());
+            assertEquals("203.0.113.0/24", data.getNetwork());
+            assertTrue(data.isEuCountry());
+        }
+    }
+
+    @Test
+    void roundTripsIPv6() throws Exception {
+        try (BinaryLookupClient client = client()) {
+            BinaryLookupClient.Response response = client.lookup("2001:db8::1", LookupProfile.COUNTRY);
+
+            assertTrue(response.isOk());
+            assertEquals("2001:db8::1", response.record().data().getIp());
+        }
+    }
+
+    @Test
+    void reportsLookupErrors() throws Exception {
+        when(geolocationService.getLocationByIP(eq("192.0.2.1"), any(LookupProfile.class)))
+                .thenThrow(new IllegalArgumentException("bad"));
+        when(geolocationService.getLocationByIP(eq("192.0.2.2"), any(LookupProfile.class)))
+                .thenThrow(new IllegalStateException("not initialized"));
+
+        try (BinaryLookupClient client = client()) {
+            BinaryLookupClient.Response invalid = client.lookup("192.0.2.1");
+            BinaryLookupClient.Response unavailable = client.lookup("192.0.2.2");
+
+            assertEquals(BinaryProtocol.STATUS_INVALID, invalid.status());
+            assertFalse(invalid.record().found());
+            assertEquals("Invalid IP address", invalid.record().error());
+            assertEquals(BinaryProtocol.STATUS_UNAVAILABLE, unavailable.status());
+            assertEquals("192.0.2.2", unavailable.record().data().getIp());
+            // The connection stays usable
+            assertTrue(client.lookup("198.51.100.1").isOk());
+        }
+    }
+
+    // Far more pipelined requests than the backlog holds: frames left unread whenever it fills
+    // must still be answered once it drains, or the client waits forever
+    @Test
+    void answersPipelinedRequestsInOrder() throws Exception {
+        List<String> ips = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            ips.add("10." + (i >>> 16 & 0xFF) + "." + (i >>> 8 & 0xFF) + "." + (i & 0xFF));
+        }
+
+        try (BinaryLookupClient client = client()) {
+            List<BinaryLookupClient.Response> responses = client.lookupAll(ips, LookupProfile.FULL);
+
+            assertEquals(ips.size(), responses.size());
+            for (int i = 0; i < ips.size(); i++) {
+                assertEquals(i, responses.get(i).id());
+                assertEquals(ips.get(i), responses.get(i).record().data().getIp());
+            }
+        }
+    }
+
+    // Every event loop has to be serving as soon as start() returns; connections are handed out
+    // round-robin, so one client per loop reaches each of them
+    @Test
+    void servesImmediatelyAfterStart() throws Exception {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            GeolocationProperties properties = new GeolocationProperties();
+            properties.getBinary().setEnabled(true);
+            properties.getBinary().setHost("127.0.0.1");
+            properties.getBinary().setPort(0);
+            properties.getBinary().setThreads(4);
+            BinaryLookupServer fresh = new BinaryLookupServer(geolocationService, properties, new SimpleMeterRegistry());
+            fresh.start();
+            try {
+                assertTrue(fresh.isRunning());
+                for (int i = 0; i < 4; i++) {
+                    try (BinaryLookupClient client = new BinaryLookupClient("127.0.0.1", fresh.getPort())) {
+                        assertTrue(client.lookup("198.51.100." + i).isOk());
+                    }
+                }
+            } finally {
+                fresh.stop();
+            }
+        }
+    }
+
+    @Test
+    void doesNotStartWhenDisabled() {
+        GeolocationProperties properties = new GeolocationProperties();
+        BinaryLookupServer disabled = new BinaryLookupServer(geolocationService, properties, new SimpleMeterRegistry());
+        disabled.start();
+
+        assertFalse(disabled.isRunning());
+        assertEquals(-1, disabled.getPort());
+    }
+
+    private BinaryLookupClient client() throws Exception {
+        return new BinaryLookupClient("127.0.0.1", server.getPort());
+    }
+
+    private static GeoLocationData location(String ip) {
+        return GeoLocationData.builder()
+                .ip(ip)
+                .countryCode("DE")
+                .continent("EU")
+                .city("Berlin")
+                .region("Berlin")
+                .regionCode("BE")
+                .latitude(52.52)
+                .longitude(13.405)
+                .accuracyRadius(20)
+                .asn(64496L)
+                .asnOrganization("Example Networks")
+                .network(ip.contains(":") ? "2001:db8::/32" : ip.substring(0, ip.lastIndexOf('.')) + ".0/24")
+                .isEuCountry(true)
+                .build();
+    }
+}
@@ -0,0 +1,238 @@
+package com.nyusta.geolocation_api.service;
+
+import com.nyusta.geolocation_api.config.MaxMindProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatabaseDownloaderTest {
+    private static final byte[] DATABASE = "database contents".getBytes(StandardCharsets.UTF_8);
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path directory;
+
+    private HttpServer server;
+    private final AtomicInteger archiveRequests = new AtomicInteger();
+    private volatile byte[] archive;
+    private volatile String checksum;
+    private volatile String ifNoneMatch;
+
+    private MaxMindProperties properties;
+    private DatabaseDownloader downloader;
+    private Path target;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        archive = archive(true);
+        checksum = sha256(archive);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::serve);
+        server.start();
+
+        properties = new MaxMindProperties();
+        properties.setDownloadUrls(Map.of("city",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/GeoLite2-City.tar.gz"));
+        downloader = new DatabaseDownloader(properties);
+        target = directory.resolve("GeoLite2-City.mmdb");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        downloader.close();
+        server.stop(0);
+    }
+
+    @Test
+    void installsVerifiedDatabase() throws Exception {
+        Files.writeString(target, "old database");
+
+        assertEquals(DatabaseDownloader.Outcome.UPDATED, downloader.download("city", target));
+
+        assertArrayEquals(DATABASE, Files.readAllBytes(target));
+        assertFalse(Files.exists(partial()));
+        Properties meta = meta();
+        assertEquals(checksum, meta.getProperty("sha256"));
+        assertEquals(ETAG, meta.getProperty("etag"));
+    }
+
+    @Test
+    void keepsLiveFileOnChecksumMismatch() throws Exception {
+        Files.writeString(target, "old database");
+        checksum = sha256("something else".getBytes(StandardCharsets.UTF_8));
+
+        IOException e = assertThrows(IOException.class, () -> downloader.download("city", target));
+
+        assertTrue(e.getMessage().contains("Checksum mismatch"), e.getMessage());
+        assertEquals("old database", Files.readString(target));
+        assertFalse(Files.exists(partial()));
+        assertFalse(Files.exists(metaFile()));
+    }
+
+    @Test
+    void sendsEtagAndHonoursNotModified() throws Exception {
+        properties.getDownload().setVerifyChecksum(false);
+        downloader.download("city", target);
+        assertNull(ifNoneMatch);
+
+        assertEquals(DatabaseDownloader.Outcome.NOT_MODIFIED, downloader.download("city", target));
+
+        assertEquals(ETAG, ifNoneMatch);
+        assertEquals(2, archiveRequests.get());
+        assertArrayEquals(DATABASE, Files.readAllBytes(target));
+    }
+
+    @Test
+    void skipsDownloadWhenChecksumUnchanged() throws Exception {
+        downloader.download("city", target);
+
+        assertEquals(DatabaseDownloader.Outcome.NOT_MODIFIED, downloader.download("city", target));
+
+        assertEquals(1, archiveRequests.get());
+    }
+
+    @Test
+    void downloadsAgainWhenChecksumChanges() throws Exception {
+        downloader.download("city", target);
+        archive = archive(true, "README.txt");
+        checksum = sha256(archive);
+
+        assertEquals(DatabaseDownloader.Outcome.UPDATED, downloader.download("city", target));
+
+        assertEquals(2, archiveRequests.get());
+        assertEquals(checksum, meta().getProperty("sha256"));
+    }
+
+    @Test
+    void rejectsArchiveWithoutDatabase() throws Exception {
+        archive = archive(false);
+        checksum = sha256(archive);
+
+        IOException e = assertThrows(IOException.class, () -> downloader.download("city", target));
+
+        assertEquals("No .mmdb file found in archive", e.getMessage());
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(partial()));
+    }
+
+    @Test
+    void reportsHttpErrors() {
+        properties.setDownloadUrls(Map.of("city",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/missing.tar.gz"));
+        properties.getDownload().setVerifyChecksum(false);
+
+        IOException e = assertThrows(IOException.class, () -> downloader.download("city", target));
+
+        assertTrue(e.getMessage().contains("HTTP 404"), e.getMessage());
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    void keepsLicenseKeyOutOfErrors() {
+        properties.setChecksumUrls(Map.of("city", "http://127.0.0.1:" + server.getAddress().getPort()
+                + "/GeoLite2-City.tar.gz.sha256?license_key=secret"));
+        checksum = "not a checksum";
+
+        IOException e = assertThrows(IOException.class, () -> downloader.download("city", target));
+
+        assertEquals("Malformed sha256 checksum for city database", e.getMessage());
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/GeoLite2-City.tar.gz.sha256")) {
+            respond(exchange, 200, (checksum + "  GeoLite2-City.tar.gz\n").getBytes(StandardCharsets.US_ASCII));
+        } else if (path.equals("/GeoLite2-City.tar.gz")) {
+            archiveRequests.incrementAndGet();
+            ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ETAG.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            respond(exchange, 200, archive);
+        } else {
+            respond(exchange, 404, new byte[0]);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // Laid out like MaxMind's archives: a dated directory with the database among text files
+    private static byte[] archive(boolean withDatabase, String... extraFiles) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(bytes))) {
+            addEntry(tar, "GeoLite2-City_20250101/COPYRIGHT.txt", "Copyright".getBytes(StandardCharsets.UTF_8));
+            if (withDatabase) {
+                addEntry(tar, "GeoLite2-City_20250101/GeoLite2-City.mmdb", DATABASE);
+            }
+            addEntry(tar, "GeoLite2-City_20250101/LICENSE.txt", "License".getBytes(StandardCharsets.UTF_8));
+            for (String file : extraFiles) {
+                addEntry(tar, "GeoLite2-City_20250101/" + file, file.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void addEntry(TarArchiveOutputStream tar, String name, byte[] content) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(content.length);
+        tar.putArchiveEntry(entry);
+        tar.write(content);
+        tar.closeArchiveEntry();
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    private Path partial() {
+        return directory.resolve("GeoLite2-City.mmdb.partial");
+    }
+
+    private Path metaFile() {
+        return directory.resolve("GeoLite2-City.mmdb.download");
+    }
+
+    private Properties meta() throws IOException {
+        Properties meta = new Properties();
+        try (Reader reader = Files.newBufferedReader(metaFile())) {
+            meta.load(reader);
+        }
+        return meta;
+    }
+}
@@ -0,0 +1,96 @@
+package com.nyusta.geolocation_api.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CidrTrieTest {
+
+    @Test
+    void returnsMostSpecificMatch() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.insert("10.0.0.0/8", "private");
+        trie.insert("10.1.0.0/16", "office");
+        trie.insert("10.1.2.3", "host");
+
+        assertEquals("private", trie.longestMatch(IPAddress.parse("10.200.0.1")));
+        assertEquals("office", trie.longestMatch(IPAddress.parse("10.1.255.255")));
+        assertEquals("host", trie.longestMatch(IPAddress.parse("10.1.2.3")));
+        assertEquals("office", trie.longestMatch(IPAddress.parse("10.1.2.4")));
+        assertNull(trie.longestMatch(IPAddress.parse("11.0.0.0")));
+        assertEquals(3, trie.size());
+    }
+
+    @Test
+    void matchesBlockBoundaries() {
+        CidrTrie<Boolean> trie = new CidrTrie<>();
+        trie.insert("172.16.0.0/12", Boolean.TRUE);
+
+        assertTrue(trie.contains(IPAddress.parse("172.16.0.0")));
+        assertTrue(trie.contains(IPAddress.parse("172.31.255.255")));
+        assertFalse(trie.contains(IPAddress.parse("172.15.255.255")));
+        assertFalse(trie.contains(IPAddress.parse("172.32.0.0")));
+    }
+
+    @Test
+    void keepsFamiliesApart() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.insert("0.0.0.0/0", "any-ipv4");
+        trie.insert("fc00::/7", "unique-local");
+
+        assertEquals("any-ipv4", trie.longestMatch(IPAddress.parse("198.51.100.1")));
+        assertEquals("any-ipv4", trie.longestMatch(IPAddress.parse("::ffff:198.51.100.1")));
+        assertEquals("unique-local", trie.longestMatch(IPAddress.parse("fd12:3456::1")));
+        assertNull(trie.longestMatch(IPAddress.parse("2001:db8::1")));
+        assertNull(trie.longestMatch(IPAddress.parse("::")));
+    }
+
+    @Test
+    void matchesAcrossTheIPv6WordBoundary() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.insert("2001:db8::/64", "subnet");
+        trie.insert("2001:db8::8000:0:0:0/65", "upper-half");
+
+        assertEquals("subnet", trie.longestMatch(IPAddress.parse("2001:db8::7fff:ffff:ffff:ffff")));
+        assertEquals("upper-half", trie.longestMatch(IPAddress.parse("2001:db8::8000:0:0:1")));
+        assertNull(trie.longestMatch(IPAddress.parse("2001:db8:0:1::")));
+    }
+
+    @Test
+    void replacesValueOfExistingBlock() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.insert("192.168.0.0/16", "old");
+        trie.insert("192.168.0.0/16", "new");
+
+        assertEquals("new", trie.longestMatch(IPAddress.parse("192.168.1.1")));
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        for (int i = 0; i < 256; i++) {
+            trie.insert("10." + i + ".0.0/16", "net-" + i);
+        }
+
+        assertEquals(256, trie.size());
+        for (int i = 0; i < 256; i++) {
+            assertEquals("net-" + i, trie.longestMatch(IPAddress.parse("10." + i + ".1.1")));
+        }
+    }
+
+    @Test
+    void rejectsInvalidBlocks() {
+        CidrTrie<Boolean> trie = new CidrTrie<>();
+
+        assertThrows(IllegalArgumentException.class, () -> trie.insert("10.0.0.0/33", Boolean.TRUE));
+        assertThrows(IllegalArgumentException.class, () -> trie.insert("2001:db8::/129", Boolean.TRUE));
+        assertThrows(IllegalArgumentException.class, () -> trie.insert("10.0.0.0/x", Boolean.TRUE));
+        assertThrows(IllegalArgumentException.class, () -> trie.insert("example.com/8", Boolean.TRUE));
+        assertTrue(trie.isEmpty());
+    }
+}
@@ -0,0 +1,150 @@
+package com.nyusta.geolocation_api.utils;
+
+import com.nyusta.geolocation_api.config.GeolocationProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClientIpResolverTest {
+    private static final String PROXY = "10.0.0.5"; // trusted by default
+    private static final String CLIENT = "203.0.113.7";
+
+    private final ClientIpResolver resolver = new ClientIpResolver(new GeolocationProperties());
+
+    @Test
+    void ignoresHeadersFromUntrustedPeer() {
+        MockHttpServletRequest request = request("198.51.100.20");
+        request.addHeader("X-Forwarded-For", CLIENT);
+        request.addHeader("Forwarded", "for=" + CLIENT);
+        request.addHeader("X-Real-IP", CLIENT);
+
+        assertEquals("198.51.100.20", resolver.resolve(request));
+    }
+
+    @Test
+    void usesPeerWithoutHeaders() {
+        assertEquals(PROXY, resolver.resolve(request(PROXY)));
+    }
+
+    @Test
+    void takesFirstUntrustedHopFromTheRight() {
+        MockHttpServletRequest request = request(PROXY);
+        request.addHeader("X-Forwarded-For", "1.1.1.1, " + CLIENT + ", 10.0.0.9");
+
+        // 1.1.1.1 was written by the client itself and can't be trusted
+        assertEquals(CLIENT, resolver.resolve(request));
+    }
+
+    @Test
+    void ignoresSpoofedLeftmostEntry() {
+        MockHttpServletRequest request = request(PROXY);
+        request.addHeader("X-Forwarded-For", "127.0.0.1, " + CLIENT);
+
+        assertEquals(CLIENT, resolver.resolve(request));
+    }
+
+    @Test
+    void takesLeftmostHopWhenAllAreTrusted() {
+        MockHttpServletRequest request = request(PROXY);
+        request.addHeader("X-Forwarded-For", "192.168.1.10, 10.0.0.9");
+
+        assertEquals("192.168.1.10", resolver.resolve(request));
+    }
+
+    @Test
+    void joinsRepeatedHeaders() {
+        MockHttpServletRequest request = request(PROXY);
+        request.addHeader("X-Forwarded-For", "1.1.1.1");
+        request.addHeader("X-Forwarded-For", CLIENT + ", 10.0.0.9");
+
+        assertEquals(CLIENT, resolver.resolve(request));
+    }
+
+    @Test
+    void stripsPortsAndBrackets() {
+        assertEquals(CLIENT, resolveForwardedFor(CLIENT + ":51234"));
+        assertEquals("2001:db8::1", resolveForwardedFor("2001:db8::1"));
+        assertEquals("2001:db8::1", resolveForwardedFor("[2001:db8::1]"));
+        assertEquals("2001:db8::1", resolveForwardedFor("[2001:db8::1]:51234"));
+        assertEquals(CLIENT, resolveForwardedFor("  " + CLIENT + "  "));
+    }
+
+    @Test
+    void stopsAtUnparseableHop() {
+        // Nothing left of junk can be trusted, so the last trusted hop is the answer
+        assertEquals("10.0.0.9", resolveForwardedFor(CLIENT + ", not-an-address, 10.0.0.9"));
+        assertEquals(PROXY, resolveForwardedFor("not-an-address"));
+    }
+
+    @Test
+    void parsesForwardedHeader() {
+        assertEquals(CLIENT, resolveForwarded("for=" + CLIENT + ";proto=https;by=10.0.0.5"));
+        assertEquals(CLIENT, resolveForwarded("proto=https;For=" + CLIENT));
+        assertEquals(CLIENT, resolveForwarded("for=1.1.1.1, for=" + CLIENT + ", for=10.0.0.9"));
+    }
+
+    @Test
+    void unquotesForwardedValues() {
+        assertEquals("2001:db8:cafe::17", resolveForwarded("for=\"[2001:db8:cafe::17]:4711\""));
+        assertEquals(CLIENT, resolveForwarded("for=\"" + CLIENT + ":4711\""));
+        // A quoted comma doesn't split elements
+        assertEquals(CLIENT, resolveForwarded("for=" + CLIENT + ";ext=\"a, for=1.1.1.1\""));
+    }
+
+    @Test
+    void stopsAtUnknownAndObfuscatedNodes() {
+        assertEquals("10.0.0.9", resolveForwarded("for=" + CLIENT + ", for=unknown, for=10.0.0.9"));
+        assertEquals("10.0.0.9", resolveForwarded("for=" + CLIENT + ", for=\"_hidden\", for=10.0.0.9"));
+        assertEquals("10.0.0.9", resolveForwarded("for=" + CLIENT + ", for=_gazonk, for=10.0.0.9"));
+        assertEquals(PROXY, resolveForwarded("for=unknown"));
+    }
+
+    @Test
+    void fallsBackToNextHeader() {
+        MockHttpServletRequest request = request(PROXY);
+        request.addHeader("Forwarded", "for=unknown");
+        request.addHeader("X-Real-IP", CLIENT);
+
+        assertEquals(CLIENT, resolver.resolve(request));
+    }
+
+    @Test
+    void trustsNothingWithoutTrustedProxies() {
+        GeolocationProperties properties = new GeolocationProperties();
+        properties.getClientIp().getTrustedProxies().clear();
+        ClientIpResolver untrusting = new ClientIpResolver(properties);
+        MockHttpServletRequest request = request(PROXY);
+        request.addHeader("X-Forwarded-For", CLIENT);
+
+        assertEquals(PROXY, untrusting.resolve(request));
+    }
+
+    @Test
+    void memoizesResultOnRequest() {
+        MockHttpServletRequest request = request(PROXY);
+        request.addHeader("X-Forwarded-For", CLIENT);
+        assertEquals(CLIENT, resolver.resolve(request));
+
+        request.setRemoteAddr("198.51.100.20");
+        assertEquals(CLIENT, resolver.resolve(request));
+    }
+
+    private String resolveForwardedFor(String value) {
+        MockHttpServletRequest request = request(PROXY);
+        request.addHeader("X-Forwarded-For", value);
+        return resolver.resolve(request);
+    }
+
+    private String resolveForwarded(String value) {
+        MockHttpServletRequest request = request(PROXY);
+        request.addHeader("Forwarded", value);
+        return resolver.resolve(request);
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+}
@@ -0,0 +1,119 @@
+package com.nyusta.geolocation_api.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IPAddressTest {
+
+    @Test
+    void parsesIPv4IntoMappedForm() {
+        IPAddress address = IPAddress.parse("192.0.2.1");
+
+        assertTrue(address.isIPv4());
+        assertEquals(0L, address.high());
+        assertEquals(0x0000_FFFF_C000_0201L, address.low());
+        assertEquals(0xC0000201, address.toIPv4Int());
+        assertEquals("192.0.2.1", address.toString());
+    }
+
+    @Test
+    void rejectsMalformedIPv4() {
+        for (String text : new String[]{"256.0.0.1", "1.2.3", "1.2.3.4.5", "1..2.3", "1.2.3.", "0001.2.3.4",
+                "1.2.3.a", " 1.2.3.4", "localhost", "example.com", ""}) {
+            assertNull(IPAddress.parse(text), text);
+        }
+        assertNull(IPAddress.parse(null));
+    }
+
+    @Test
+    void parsesIPv6Forms() {
+        assertEquals(IPAddress.ofIPv6(0x2001_0DB8_0000_0000L, 1L), IPAddress.parse("2001:db8::1"));
+        assertEquals(IPAddress.ofIPv6(0x2001_0DB8_0000_0000L, 1L), IPAddress.parse("2001:0DB8:0:0:0:0:0:1"));
+        assertEquals(IPAddress.ofIPv6(0L, 0L), IPAddress.parse("::"));
+        assertEquals(IPAddress.ofIPv6(0L, 1L), IPAddress.parse("::1"));
+        assertEquals(IPAddress.ofIPv6(0xFE80_0000_0000_0000L, 0L), IPAddress.parse("fe80::"));
+        assertEquals(IPAddress.ofIPv6(0x0001_0002_0003_0004L, 0x0005_0006_0007_0008L),
+                IPAddress.parse("1:2:3:4:5:6:7:8"));
+        assertEquals(IPAddress.ofIPv6(0x0064_FF9B_0000_0000L, 0xC000_0201L), IPAddress.parse("64:ff9b::192.0.2.1"));
+    }
+
+    @Test
+    void treatsIPv4MappedIPv6AsIPv4() {
+        IPAddress mapped = IPAddress.parse("::ffff:192.0.2.1");
+
+        assertTrue(mapped.isIPv4());
+        assertEquals(IPAddress.parse("192.0.2.1"), mapped);
+        assertEquals("192.0.2.1", mapped.toString());
+        assertEquals(IPAddress.parse("192.0.2.1"), IPAddress.parse("::ffff:c000:201"));
+    }
+
+    @Test
+    void rejectsMalformedIPv6() {
+        for (String text : new String[]{":", ":::", "1::2::3", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7", "12345::",
+                "2001:db8::g", "2001:db8:", ":2001:db8::1", "fe80::1%eth0", "[2001:db8::1]",
+                "1:2:3:4:5:6:7:1.2.3.4", "::1.2.3"}) {
+            assertNull(IPAddress.parse(text), text);
+        }
+    }
+
+    @Test
+    void parsesSubranges() {
+        String header = "for=192.0.2.60;proto=http";
+
+        assertEquals(IPAddress.parse("192.0.2.60"), IPAddress.parse(header, 4, 14));
+        assertEquals(0xC000023CL, IPAddress.parseIPv4(header, 4, 14));
+        assertEquals(-1L, IPAddress.parseIPv4(header, 0, 14));
+    }
+
+    @Test
+    void recognisesLiteralsOnly() {
+        assertTrue(IPAddress.isLiteral("8.8.8.8"));
+        assertTrue(IPAddress.isLiteral("2001:4860:4860::8888"));
+        assertFalse(IPAddress.isLiteral("dns.google"));
+        assertFalse(IPAddress.isLiteral(""));
+        assertFalse(IPAddress.isLiteral(null));
+    }
+
+    @Test
+    void roundTripsThroughBytes() throws Exception {
+        for (String text : new String[]{"0.0.0.0", "203.0.113.255", "2001:db8::ff00:42:8329", "::1"}) {
+            IPAddress address = IPAddress.parse(text);
+            InetAddress expected = InetAddress.getByName(text);
+
+            assertArrayEquals(expected.getAddress(), address.toBytes(), text);
+            assertEquals(address, IPAddress.fromBytes(address.toBytes()), text);
+            assertEquals(expected, address.toInetAddress(), text);
+        }
+    }
+
+    @Test
+    void formatsNetworks() {
+        assertEquals("192.0.2.0/24", IPAddress.parse("192.0.2.77").toCidr(24));
+        assertEquals("0.0.0.0/0", IPAddress.parse("192.0.2.77").toCidr(0));
+        assertEquals("2001:db8::/32", IPAddress.parse("2001:db8:1234::1").toCidr(32));
+        assertEquals("2001:db8:1234::1/128", IPAddress.parse("2001:db8:1234::1").toCidr(128));
+        assertEquals("::/0", IPAddress.parse("2001:db8:1234::1").toCidr(0));
+    }
+
+    @Test
+    void formatsIPv6Canonically() {
+        assertEquals("2001:db8::1", IPAddress.parse("2001:0DB8:0:0:0:0:0:1").toString());
+        assertEquals("::", IPAddress.parse("0:0:0:0:0:0:0:0").toString());
+        assertEquals("::1", IPAddress.parse("::1").toString());
+        assertEquals("fe80::", IPAddress.parse("fe80:0:0:0:0:0:0:0").toString());
+        // A single zero group is not compressed
+        assertEquals("2001:db8:0:1:1:1:1:1", IPAddress.parse("2001:db8::1:1:1:1:1").toString());
+        // The longest run wins, and the first of two equally long runs
+        assertEquals("2001:0:0:1::1", IPAddress.parse("2001:0:0:1:0:0:0:1").toString());
+        assertEquals("2001:db8::1:0:0:1", IPAddress.parse("2001:db8:0:0:1:0:0:1").toString());
+        assertEquals("64:ff9b::c000:201", IPAddress.parse("64:ff9b::192.0.2.1").toString());
+        assertEquals("1:2:3:4:5:6:7:8", IPAddress.parse("1:2:3:4:5:6:7:8").toString());
+    }
+}